@@ -1,7 +1,5 @@
 package com.example.evenue.controller;
 
-import com.example.evenue.models.events.EventModel;
-import com.example.evenue.models.events.EventDao;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.RecommendationDto;
 import com.example.evenue.service.RecommendationService;
@@ -18,9 +16,6 @@ import java.util.List;
 @Controller
 public class HomeController {
 
-    @Autowired
-    private EventDao eventDao;
-
     @Autowired
     private RecommendationService recommendationService;
 
@@ -29,9 +24,6 @@ public class HomeController {
 
     @GetMapping("/")
     public String home(Model model) {
-        // Fetch all events from the database
-        List<EventModel> events = eventDao.findAll();
-
         // Get authenticated user's email from Spring Security
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -56,7 +48,6 @@ public class HomeController {
 
         // Add attributes to the model
         model.addAttribute("popularRecommendations", popularRecommendations);
-        model.addAttribute("events", events);
 
         // Add authentication status to model (optional, for UI customization)
         model.addAttribute("isAuthenticated",
@@ -5,9 +5,12 @@ import com.example.evenue.models.tickets.TicketModel;
 import com.example.evenue.models.tickets.TicketTypeModel;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.EventService;
-import com.example.evenue.service.TicketService;
+import com.example.evenue.service.PurchaseIdempotencyService;
+import com.example.evenue.service.TicketHoldService;
+import com.example.evenue.service.TicketInventoryService;
 import com.example.evenue.service.TicketTypeService;
 import com.example.evenue.service.UserService;
+import com.example.evenue.utils.InsufficientInventoryException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -15,7 +18,6 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +34,13 @@ public class DialogflowWebhookController {
     private EventService eventService;
 
     @Autowired
-    private TicketService ticketService;
+    private TicketInventoryService ticketInventoryService;
+
+    @Autowired
+    private PurchaseIdempotencyService purchaseIdempotencyService;
+
+    @Autowired
+    private TicketHoldService ticketHoldService;
 
     @PostMapping
     public ResponseEntity<Map<String, Object>> handleDialogflowWebhook(@RequestBody Map<String, Object> request) {
@@ -323,30 +331,42 @@ public class DialogflowWebhookController {
             EventModel event = eventOpt.get();
 
             TicketTypeModel ticketType = ticketTypeService.getTicketTypeById(ticketTypeId);
-            if (ticketType == null) {
+            if (ticketType == null || !ticketType.getEvent().getId().equals(event.getId())) {
                 Map<String, Object> fulfillmentResponse = new HashMap<>();
                 fulfillmentResponse.put("fulfillmentText", "Ticket type not found. Please provide a valid ticket type.");
                 return ResponseEntity.ok(fulfillmentResponse);
             }
 
-            // Create the ticket booking entry in the database
-            TicketModel ticket = new TicketModel();
-            ticket.setUser(user);
-            ticket.setEvent(event);
-            ticket.setTicketType(ticketType);
-            ticket.setQuantity(quantity);
-            ticket.setPrice(ticketType.getPrice() * quantity);  // Calculate total price
-            ticket.setPurchaseDate(LocalDateTime.now());
-
-            // Set createdAt and updatedAt timestamps
-            ticket.setCreatedAt(LocalDateTime.now());
-            ticket.setUpdatedAt(LocalDateTime.now());
+            // Flash-sale events sell only through the website's waiting room
+            if (event.isWaitingRoomEnabled()) {
+                Map<String, Object> fulfillmentResponse = new HashMap<>();
+                fulfillmentResponse.put("fulfillmentText", "Tickets for '" + event.getEventName() +
+                        "' are sold through a waiting room. Please book on the event page.");
+                return ResponseEntity.ok(fulfillmentResponse);
+            }
 
-            // Generate a unique ticket code
-            ticket.generateTicketCode();
+            if (quantity <= 0 || quantity > ticketHoldService.getMaxPerOrder()) {
+                Map<String, Object> fulfillmentResponse = new HashMap<>();
+                fulfillmentResponse.put("fulfillmentText", "You can book between 1 and " +
+                        ticketHoldService.getMaxPerOrder() + " tickets at a time.");
+                return ResponseEntity.ok(fulfillmentResponse);
+            }
 
-            // Save the ticket booking
-            ticketService.saveTicket(ticket);
+            // Take the tickets and save the booking in one step, refusing rather than overselling.
+            // Dialogflow re-delivers a timed-out webhook call with the same responseId, so that is the key
+            String idempotencyKey = request.get("responseId") != null ? "dialogflow:" + request.get("responseId") : null;
+            int bookedQuantity = quantity;
+            TicketModel ticket;
+            try {
+                ticket = purchaseIdempotencyService.purchase(idempotencyKey, user.getId(),
+                        "ticketType=" + ticketTypeId + ";quantity=" + bookedQuantity,
+                        () -> ticketInventoryService.purchase(user, event, ticketType, bookedQuantity)).ticket();
+            } catch (InsufficientInventoryException e) {
+                Map<String, Object> fulfillmentResponse = new HashMap<>();
+                fulfillmentResponse.put("fulfillmentText", "I'm sorry, there are not enough " + ticketType.getTypeName().name() +
+                        " tickets left for this event.");
+                return ResponseEntity.ok(fulfillmentResponse);
+            }
 
             // Respond with a confirmation message, including the ticket code
             String confirmationMessage = "Your booking for " + quantity + " " + ticketType.getTypeName().name() +
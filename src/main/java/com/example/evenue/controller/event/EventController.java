@@ -1,20 +1,16 @@
 package com.example.evenue.controller.event;
 
 import com.example.evenue.models.events.EventCategory;
-import com.example.evenue.models.events.EventCategoryDao;
 import com.example.evenue.models.events.EventModel;
 import com.example.evenue.models.tickets.TicketTypeModel;
 import com.example.evenue.models.users.UserDao;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.*;
+import com.example.evenue.utils.UnsupportedImageException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,12 +18,12 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.IOException;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -40,9 +36,6 @@ public class EventController {
     @Autowired
     private EventService eventService;
 
-    @Autowired
-    private EventCategoryDao eventCategoryDao;
-
     @Autowired
     private UserService userService;
 
@@ -55,6 +48,12 @@ public class EventController {
     @Autowired
     private UserBehaviourService userBehaviourService;
 
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     private static final Logger logger = LoggerFactory.getLogger(EventController.class);
 
     // Endpoint to display the create event form
@@ -64,7 +63,7 @@ public class EventController {
         model.addAttribute("event", new EventModel());
 
         // Fetch all categories from the database
-        List<EventCategory> categories = eventCategoryDao.findAll();
+        List<EventCategory> categories = referenceDataCache.getCategories();
 
         // Add the categories to the model to be displayed in the dropdown
         model.addAttribute("categories", categories);
@@ -98,13 +97,13 @@ public class EventController {
                     return "create-event";
                 }
 
-                byte[] photoBytes = file.getBytes();
-                String photoBase64 = Base64.getEncoder().encodeToString(photoBytes);
-                String photoBase64WithPrefix = "data:" + file.getContentType() + ";base64," + photoBase64;
+                // Keep only the /media/{hash} reference on the event, not the image bytes
+                event.setEventImage(fileStorageService.storeImage(file));
 
-                event.setEventImage(photoBase64WithPrefix);
-
-            } catch (IOException e) {
+            } catch (UnsupportedImageException e) {
+                model.addAttribute("errorMessage", e.getMessage());
+                return "create-event";
+            } catch (RuntimeException e) {
                 model.addAttribute("errorMessage", "Failed to upload image. Please try again.");
                 return "create-event";
             }
@@ -120,10 +119,11 @@ public class EventController {
         return "redirect:/events/create";
     }
 
-    // Browse events - GET method with pagination support
+    // Browse events - GET method with keyset (cursor) pagination
     @GetMapping("/browse")
     public String browseEvents(
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String before,
             @RequestParam(defaultValue = "5") int size,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) String date,
@@ -142,40 +142,30 @@ public class EventController {
             categories = new ArrayList<>();
         }
 
-        // Log the filter values
-//        logger.info("Categories: {}", categories);
-//        logger.info("Date filter: {}", date);
-//        logger.info("Price filter: {}", price);
-//        logger.info("Location filter: {}", location); // Log location
-//        logger.info("Search query: {}", search); // Log search query
-
-        // Create pageable object
-        Pageable pageable = PageRequest.of(page, size);
-
-        // Fetch filtered events
-        Page<EventModel> eventPage;
-        if (categories.isEmpty() && (date == null || date.isEmpty()) && (price == null || price.isEmpty()) && (search == null || search.isEmpty())) {
-            eventPage = eventService.getAllEvents(pageable);
-        } else {
-            eventPage = eventService.getFilteredEvents(categories, date, price, search, location, pageable); // Include search and location
+        // Fetch one slice of filtered events; a stale or tampered cursor restarts from the first page
+        EventSlice eventSlice;
+        try {
+            eventSlice = eventService.browseEvents(categories, date, price, search, location, after, before, size);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring invalid browse cursor: {}", e.getMessage());
+            eventSlice = eventService.browseEvents(categories, date, price, search, location, null, null, size);
         }
 
-        // Log the number of events fetched
-        logger.info("Number of events fetched: {}", eventPage.getTotalElements());
-
-        // Set 'isLiked' flag for each event
-        for (EventModel event : eventPage.getContent()) {
-            boolean isLiked = wishlistService.isEventLikedByUser(loggedInUser, event);
-            event.setLiked(isLiked);
+        // Set 'isLiked' flag for each event, resolved for the whole page at once
+        Set<Long> likedEventIds = wishlistService.likedEventIds(loggedInUser,
+                eventSlice.getEvents().stream().map(EventModel::getId).collect(Collectors.toList()));
+        for (EventModel event : eventSlice.getEvents()) {
+            event.setLiked(likedEventIds.contains(event.getId()));
         }
 
-        model.addAttribute("events", eventPage.getContent());
-        model.addAttribute("totalPages", eventPage.getTotalPages());
-        model.addAttribute("currentPage", page);
+        model.addAttribute("events", eventSlice.getEvents());
+        model.addAttribute("nextCursor", eventSlice.getNextCursor());
+        model.addAttribute("previousCursor", eventSlice.getPreviousCursor());
+        model.addAttribute("totalEvents", eventService.countEvents(categories, date, price, search, location));
         model.addAttribute("size", size);
 
         // Fetch categories for filtering
-        List<EventCategory> eventCategories = eventCategoryDao.findAll();
+        List<EventCategory> eventCategories = referenceDataCache.getCategories();
         model.addAttribute("categories", eventCategories);
 
         // Ensure date, price, location, and search filters are passed back
@@ -189,35 +179,25 @@ public class EventController {
     }
 
 
-    // Filter events with pagination
+    // Filter events: the same filters as the GET, so redirect there; it renders with cursor pagination
     @PostMapping("/browse")
     public String filterEvents(
             @RequestParam(value = "category", required = false) Long categoryId,
             @RequestParam(value = "search", required = false, defaultValue = "") String search,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "eventDate") String sortBy,
-            @RequestParam(value = "location", required = false) String location,
-            Model model) {
-
-        // Create pageable object
-        Pageable pageable = PageRequest.of(page, size, Sort.by(sortBy));
-
-        // Ensure you're calling the filter method with the right parameters
-        Page<EventModel> filteredEvents = eventService.filterEvents(categoryId, search, location, pageable); // This should be correct
-
-        model.addAttribute("events", filteredEvents.getContent());
-        model.addAttribute("totalPages", filteredEvents.getTotalPages());
-        model.addAttribute("currentPage", page);
-        model.addAttribute("size", size);
-
-        // Add categories again for the filter dropdown
-        List<EventCategory> categories = eventCategoryDao.findAll();
-        model.addAttribute("categories", categories);
-        model.addAttribute("search", search);
-        model.addAttribute("selectedLocation", location != null ? location : ""); // Pass back selected location
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(value = "location", required = false) String location) {
 
-        return "browse-events"; // Return to the browse events page with filtered results
+        UriComponentsBuilder browse = UriComponentsBuilder.fromPath("/events/browse").queryParam("size", size);
+        if (categoryId != null && categoryId > 0) {
+            browse.queryParam("categories", categoryId);
+        }
+        if (!search.isBlank()) {
+            browse.queryParam("search", search);
+        }
+        if (location != null && !location.isBlank()) {
+            browse.queryParam("location", location);
+        }
+        return "redirect:" + browse.encode().toUriString();
     }
 
 
@@ -239,15 +219,9 @@ public class EventController {
         // Fetch ticket types for the event
         List<TicketTypeModel> ticketTypes = ticketTypeService.getTicketTypesByEventId(eventId);
 
-        // Calculate price range
-        double minPrice = ticketTypes.stream()
-                .mapToDouble(TicketTypeModel::getPrice)
-                .min()
-                .orElse(0);
-        double maxPrice = ticketTypes.stream()
-                .mapToDouble(TicketTypeModel::getPrice)
-                .max()
-                .orElse(0);
+        // Price range is denormalised onto the event whenever ticket types change
+        double minPrice = event.getMinPrice() != null ? event.getMinPrice() : 0;
+        double maxPrice = event.getMaxPrice() != null ? event.getMaxPrice() : 0;
 
         // Add attributes to the model
         model.addAttribute("event", event); // Pass the unwrapped EventModel to the view
@@ -0,0 +1,110 @@
+package com.example.evenue.controller.media;
+
+import com.example.evenue.service.FileStorageService;
+import com.example.evenue.service.ImageVariant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@Controller
+public class MediaController {
+
+    // Tomcat request attributes for handing the file to the connector's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Media is addressed by content hash, so a URL's bytes can never change
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    // Stream a stored image by its SHA-256
+    @GetMapping("/media/{hash}")
+    public void serveMedia(@PathVariable String hash, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Path blob = fileStorageService.resolve(hash);
+        if (blob == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        stream(blob, fileStorageService.contentType(hash), "\"" + hash + "\"", request, response);
+    }
+
+    // Stream a resized rendition (card, detail, original) of a stored image
+    @GetMapping("/media/{hash}/{variant}")
+    public void serveVariant(@PathVariable String hash, @PathVariable String variant,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageVariant imageVariant = ImageVariant.fromKey(variant);
+        Path blob = imageVariant != null ? fileStorageService.resolve(hash, imageVariant) : null;
+        if (blob == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // The fallback to the original is not cached as the rendition, so it can be picked up later
+        boolean isOriginal = blob.equals(fileStorageService.resolve(hash));
+        if (isOriginal && imageVariant != ImageVariant.ORIGINAL) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=3600");
+            streamBody(blob, fileStorageService.contentType(hash), request, response);
+            return;
+        }
+        stream(blob, fileStorageService.contentType(hash, blob), "\"" + hash + "-" + variant + "\"", request, response);
+    }
+
+    private void stream(Path blob, String contentType, String etag, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        streamBody(blob, contentType, request, response);
+    }
+
+    private void streamBody(Path blob, String contentType, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(blob, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Served from the site's origin: never let a browser render anything but an image inline
+            response.setHeader("X-Content-Type-Options", "nosniff");
+            if (FileStorageService.isImageType(contentType)) {
+                response.setContentType(contentType);
+            } else {
+                response.setContentType("application/octet-stream");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment");
+            }
+            response.setContentLengthLong(size);
+
+            // Let the connector send the file straight from the page cache when it can
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, blob.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.evenue.controller.posts;
 
 import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.events.EventOption;
 import com.example.evenue.models.posts.PostModel;
 import com.example.evenue.models.posts.PostResponse;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.EventService;
 import com.example.evenue.service.PostService;
 import com.example.evenue.service.UserService;
+import com.example.evenue.utils.UnsupportedImageException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -50,7 +52,7 @@ public class PostController {
         List<EventModel> paginatedEvents = eventsPage.getContent();
 
         // Fetch all events for the dropdown (without pagination)
-        List<EventModel> allEventsForDropdown = eventService.getAllEventsForDropdown();
+        List<EventOption> allEventsForDropdown = eventService.getAllEventsForDropdown();
 
         // Add paginated events to the model
         model.addAttribute("events", paginatedEvents);
@@ -87,7 +89,11 @@ public class PostController {
         String email = authentication.getName();
         UserModel user = userService.findUserByEmail(email);
 
-        postService.createPost(title, content, eventId, user, images);
+        try {
+            postService.createPost(title, content, eventId, user, images);
+        } catch (UnsupportedImageException e) {
+            return "redirect:/posts/create?imageError";
+        }
 
         return "redirect:/posts"; // Redirect to the posts list page after creation
     }
@@ -102,6 +108,17 @@ public class PostController {
         return "posts-list"; // Return the posts-list.html template
     }
 
+    /**
+     * Search posts by title and content.
+     */
+    @GetMapping("/search")
+    public String searchPosts(@RequestParam(value = "query", required = false, defaultValue = "") String query, Model model) {
+        List<PostResponse> posts = postService.searchPosts(query);
+        model.addAttribute("posts", posts);
+        model.addAttribute("searchQuery", query);
+        return "posts-list";
+    }
+
     /**
      * Retrieve a specific post by ID.
      *
@@ -185,7 +202,11 @@ public class PostController {
             @RequestParam(value = "images", required = false) List<MultipartFile> images,
             @RequestParam(value = "removeImages", required = false) List<String> removeImages) {
 
-        postService.updatePost(postId, title, content, eventId, images, removeImages); // Pass title as the first parameter
+        try {
+            postService.updatePost(postId, title, content, eventId, images, removeImages); // Pass title as the first parameter
+        } catch (UnsupportedImageException e) {
+            return "redirect:/posts/" + postId + "/edit?imageError";
+        }
         return "redirect:/posts";
     }
 
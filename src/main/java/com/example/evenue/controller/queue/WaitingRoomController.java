@@ -0,0 +1,71 @@
+package com.example.evenue.controller.queue;
+
+import com.example.evenue.models.events.EventModel;
+import com.example.evenue.service.AdmissionQueueBackend;
+import com.example.evenue.service.EventService;
+import com.example.evenue.service.WaitingRoomService;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Map;
+import java.util.Optional;
+
+@Controller
+@RequestMapping("/queue")
+public class WaitingRoomController {
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private EventService eventService;
+
+    // Waiting room page; joins the line on the first visit and forwards to checkout once admitted
+    @GetMapping("/{eventId}")
+    public String waitingRoom(@PathVariable Long eventId,
+                              @RequestParam("ticketTypeId") Long ticketTypeId,
+                              @RequestParam("quantity") Integer quantity,
+                              HttpSession session,
+                              Model model) {
+        Optional<EventModel> eventOpt = eventService.getEventById(eventId);
+        if (eventOpt.isEmpty()) {
+            model.addAttribute("error", "Event not found");
+            return "error";
+        }
+
+        String buyUrl = "/tickets/buy/" + ticketTypeId + "?quantity=" + quantity;
+        String token = (String) session.getAttribute(WaitingRoomService.sessionAttribute(eventId));
+        AdmissionQueueBackend.Status status = waitingRoomService.status(eventId, token);
+
+        if (!eventOpt.get().isWaitingRoomEnabled() || status.state() == AdmissionQueueBackend.State.ADMITTED) {
+            return "redirect:" + buyUrl;
+        }
+        if (status.state() == AdmissionQueueBackend.State.UNKNOWN) {
+            // First visit, or the old place was lost (admission expired or the page was left)
+            token = waitingRoomService.join(eventId);
+            session.setAttribute(WaitingRoomService.sessionAttribute(eventId), token);
+            status = waitingRoomService.status(eventId, token);
+        }
+
+        model.addAttribute("event", eventOpt.get());
+        model.addAttribute("position", status.position());
+        model.addAttribute("buyUrl", buyUrl);
+        return "waiting-room";
+    }
+
+    // Polled by the waiting room page
+    @GetMapping("/{eventId}/status")
+    @ResponseBody
+    public Map<String, Object> status(@PathVariable Long eventId, HttpSession session) {
+        String token = (String) session.getAttribute(WaitingRoomService.sessionAttribute(eventId));
+        AdmissionQueueBackend.Status status = waitingRoomService.status(eventId, token);
+        return Map.of("state", status.state().name(), "position", status.position());
+    }
+}
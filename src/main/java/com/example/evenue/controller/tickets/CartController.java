@@ -0,0 +1,146 @@
+package com.example.evenue.controller.tickets;
+
+import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.tickets.TicketModel;
+import com.example.evenue.models.users.UserModel;
+import com.example.evenue.service.EventService;
+import com.example.evenue.service.PurchaseIdempotencyService;
+import com.example.evenue.service.TicketHoldService;
+import com.example.evenue.service.TicketInventoryService;
+import com.example.evenue.service.UserBehaviourService;
+import com.example.evenue.service.UserService;
+import com.example.evenue.service.WaitingRoomService;
+import com.example.evenue.utils.InsufficientInventoryException;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Checkout of several ticket types of one event in one request
+@RestController
+@RequestMapping("/tickets/cart")
+public class CartController {
+
+    @Autowired
+    private TicketInventoryService ticketInventoryService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserBehaviourService userBehaviourService;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private TicketHoldService ticketHoldService;
+
+    @Autowired
+    private PurchaseIdempotencyService purchaseIdempotencyService;
+
+    // A retried checkout with the same idempotencyKey gets the tickets of the first one
+    public record CheckoutRequest(Long eventId, List<TicketInventoryService.CartLine> lines, String idempotencyKey) {
+    }
+
+    // 200 with the tickets bought, 409 if any line cannot be filled (nothing is bought then)
+    @PostMapping(value = "/checkout", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> checkout(@RequestBody CheckoutRequest request, HttpSession session) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserModel user = userService.findUserByEmail(authentication.getName());
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Optional<EventModel> eventOpt = request.eventId() != null ? eventService.getEventById(request.eventId()) : Optional.empty();
+        if (eventOpt.isEmpty() || request.lines() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid event or cart."));
+        }
+        EventModel event = eventOpt.get();
+
+        // The same limits as a hold, applied to the cart with repeated ticket types added together
+        Map<Long, Integer> quantities;
+        try {
+            quantities = TicketInventoryService.mergeLines(request.lines());
+            ticketHoldService.checkOrderLimits(user, event.getId(),
+                    quantities.values().stream().mapToInt(Integer::intValue).sum());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        // A retry of a checkout that went through gets its tickets, even once the waiting room has let go
+        String purchaseRequest = "event=" + event.getId() + ";lines=" + quantities;
+        Optional<List<TicketModel>> earlier = purchaseIdempotencyService.findAllCompleted(request.idempotencyKey(),
+                user.getId(), purchaseRequest);
+        if (earlier.isPresent()) {
+            return ResponseEntity.ok(checkoutBody(earlier.get()));
+        }
+
+        // Flash-sale events only sell to buyers admitted from the waiting room
+        String queueToken = (String) session.getAttribute(WaitingRoomService.sessionAttribute(event.getId()));
+        if (event.isWaitingRoomEnabled() && !waitingRoomService.isAdmitted(event.getId(), queueToken)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Please join the waiting room for this event first."));
+        }
+
+        PurchaseIdempotencyService.CartOutcome outcome;
+        try {
+            outcome = purchaseIdempotencyService.purchaseAll(request.idempotencyKey(), user.getId(), purchaseRequest,
+                    () -> ticketInventoryService.purchaseCart(user, event, request.lines()));
+        } catch (InsufficientInventoryException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+        List<TicketModel> tickets = outcome.tickets();
+        if (outcome.replayed()) {
+            // Completed by a concurrent retry of the same checkout, which does the logging
+            return ResponseEntity.ok(checkoutBody(tickets));
+        }
+
+        if (queueToken != null) {
+            waitingRoomService.release(event.getId(), queueToken);
+            session.removeAttribute(WaitingRoomService.sessionAttribute(event.getId()));
+        }
+
+        Long categoryId = event.getEventCategory() != null ? event.getEventCategory().getId() : null;
+        for (TicketModel ticket : tickets) {
+            // One purchase record per line, queued for BehaviourIngestionService's batched writes
+            userBehaviourService.logUserBehaviour(user.getId(), event.getId(), "purchase", event.getLocation(),
+                    null, null, null, null, null, ticket.getId(), categoryId, user.getCity());
+        }
+        return ResponseEntity.ok(checkoutBody(tickets));
+    }
+
+    // The tickets bought and their total price
+    private static Map<String, Object> checkoutBody(List<TicketModel> tickets) {
+        List<Map<String, Object>> bought = new ArrayList<>(tickets.size());
+        double total = 0;
+        for (TicketModel ticket : tickets) {
+            bought.add(Map.of(
+                    "ticketId", ticket.getId(),
+                    "ticketTypeId", ticket.getTicketType().getTicketTypeId(),
+                    "quantity", ticket.getQuantity(),
+                    "price", ticket.getPrice(),
+                    "ticketCode", ticket.getTicketCode()));
+            total += ticket.getPrice();
+        }
+        return Map.of("tickets", bought, "total", total);
+    }
+}
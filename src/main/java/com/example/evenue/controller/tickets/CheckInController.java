@@ -0,0 +1,115 @@
+package com.example.evenue.controller.tickets;
+
+import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.users.UserModel;
+import com.example.evenue.service.CheckInService;
+import com.example.evenue.service.EventService;
+import com.example.evenue.service.TicketManifestService;
+import com.example.evenue.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// JSON check-in for door scanners: no page rendering, one conditional update per scan
+@RestController
+@RequestMapping("/tickets")
+public class CheckInController {
+
+    @Autowired
+    private CheckInService checkInService;
+
+    @Autowired
+    private TicketManifestService ticketManifestService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private UserService userService;
+
+    @Value("${evenue.checkin.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    public record ScanRequest(String code, Long eventId) {
+    }
+
+    public record BatchRequest(Long eventId, List<CheckInService.Scan> scans) {
+    }
+
+    // 200 when checked in, 409 if already scanned, 422 for invalid or wrong-event codes;
+    // 400 without an eventId and 403 unless the event is the organizer's own
+    @PostMapping(value = "/scan", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<CheckInService.Result> scan(@RequestBody ScanRequest request) {
+        if (request.eventId() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!isOwnEvent(request.eventId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        CheckInService.Result result = checkInService.checkIn(request.code(), request.eventId());
+        HttpStatus status = switch (result.outcome()) {
+            case CHECKED_IN -> HttpStatus.OK;
+            case ALREADY_SCANNED -> HttpStatus.CONFLICT;
+            case WRONG_EVENT, INVALID -> HttpStatus.UNPROCESSABLE_ENTITY;
+        };
+        return ResponseEntity.status(status).body(result);
+    }
+
+    // Binary manifest of the event's valid tickets for offline scanning (see TicketManifestService)
+    @GetMapping(value = "/scan/manifest/{eventId}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> manifest(@PathVariable Long eventId) {
+        if (!isOwnEvent(eventId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"event-" + eventId + ".evtm\"")
+                .body(ticketManifestService.buildManifest(eventId));
+    }
+
+    // Upload scans made offline; applied in one transaction, results in request order
+    @PostMapping(value = "/scan/batch", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> scanBatch(@RequestBody BatchRequest request) {
+        if (request.eventId() == null || request.scans() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "eventId and scans are required."));
+        }
+        if (request.scans().size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("error", "At most " + maxBatchSize + " scans per batch."));
+        }
+        if (!isOwnEvent(request.eventId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        List<CheckInService.Result> results = checkInService.checkInBatch(request.eventId(), request.scans());
+        long checkedIn = results.stream().filter(r -> r.outcome() == CheckInService.Outcome.CHECKED_IN).count();
+        return ResponseEntity.ok(Map.of(
+                "checkedIn", checkedIn,
+                "conflicts", results.size() - checkedIn,
+                "results", results));
+    }
+
+    // Scans, manifests and bulk uploads are limited to the organizer of the event
+    private boolean isOwnEvent(Long eventId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        UserModel organizer = userService.findUserByEmail(auth.getName());
+        Optional<EventModel> event = eventService.getEventById(eventId);
+        return organizer != null && event.isPresent() && organizer.getId().equals(event.get().getOrganizerId());
+    }
+}
@@ -2,10 +2,14 @@ package com.example.evenue.controller.tickets;
 
 
 import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.tickets.TicketHoldModel;
 import com.example.evenue.models.tickets.TicketModel;
 import com.example.evenue.models.tickets.TicketTypeModel;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.*;
+import com.example.evenue.utils.HoldExpiredException;
+import com.example.evenue.utils.InsufficientInventoryException;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -13,7 +17,6 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -37,6 +40,21 @@ public class TicketController {
     @Autowired
     private UserBehaviourService userBehaviourService;
 
+    @Autowired
+    private TicketInventoryService ticketInventoryService;
+
+    @Autowired
+    private TicketHoldService ticketHoldService;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private CheckInService checkInService;
+
+    @Autowired
+    private PurchaseIdempotencyService purchaseIdempotencyService;
+
     // Endpoint to show the form for adding a new ticket type to an event
     @GetMapping("/types/add/{eventId}")
     public String showAddTicketTypeForm(@PathVariable Long eventId, Model model) {
@@ -112,29 +130,70 @@ public class TicketController {
     }
 
 
-    // Endpoint to show form for creating a ticket for a specific ticket type
+    // Endpoint to show form for creating a ticket for a specific ticket type. Reserves nothing,
+    // so following a link (or a prefetch or crawler) cannot lock inventory; the purchase takes the tickets
     @GetMapping("/buy/{ticketTypeId}")
     public String showCreateTicketForm(@PathVariable Long ticketTypeId,
                                        @RequestParam("quantity") Integer quantity,
+                                       HttpSession session,
                                        Model model) {
         TicketTypeModel ticketType = ticketTypeService.getTicketTypeById(ticketTypeId);
-        if (ticketType == null) {
-            model.addAttribute("error", "Invalid ticket type.");
-            return "error";
+        String invalid = checkQuantity(ticketType, quantity, model);
+        if (invalid != null) {
+            return invalid;
         }
 
-        if (ticketType.getRemainingQuantity() <= 0) {
-            model.addAttribute("error", "This ticket type is sold out.");
-            return "error";
+        EventModel event = ticketType.getEvent();
+        if (event.isWaitingRoomEnabled() && !isAdmitted(event.getId(), session)) {
+            return "redirect:/queue/" + event.getId() + "?ticketTypeId=" + ticketTypeId + "&quantity=" + quantity;
         }
 
-        if (quantity <= 0 || quantity > ticketType.getRemainingQuantity()) {
-            model.addAttribute("error", "Please select a valid quantity.");
-            return "redirect:/events/details/" + ticketType.getEvent().getId();
+        model.addAttribute("ticketType", ticketType);
+        model.addAttribute("quantity", quantity);
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
+        return "confirm-ticket-purchase";
+    }
+
+    // Reserve the selected tickets and show the confirmation form
+    @PostMapping("/buy/{ticketTypeId}")
+    public String holdTickets(@PathVariable Long ticketTypeId,
+                              @RequestParam("quantity") Integer quantity,
+                              HttpSession session,
+                              Model model) {
+        TicketTypeModel ticketType = ticketTypeService.getTicketTypeById(ticketTypeId);
+        String invalid = checkQuantity(ticketType, quantity, model);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        // Flash-sale events only let admitted buyers through to checkout
+        EventModel event = ticketType.getEvent();
+        if (event.isWaitingRoomEnabled() && !isAdmitted(event.getId(), session)) {
+            return "redirect:/queue/" + event.getId() + "?ticketTypeId=" + ticketTypeId + "&quantity=" + quantity;
+        }
+
+        // Reserve the tickets while the user confirms, so confirming cannot fail for lack of stock
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserModel user = userService.findUserByEmail(authentication.getName());
+        if (user == null) {
+            return "redirect:/users/login";
+        }
+
+        TicketHoldModel hold;
+        try {
+            hold = ticketHoldService.hold(user, ticketType, quantity);
+        } catch (InsufficientInventoryException e) {
+            model.addAttribute("error", "Sorry, these tickets have just been reserved by other buyers.");
+            return "error";
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("error", e.getMessage());
+            return "error";
         }
 
         model.addAttribute("ticketType", ticketType);
         model.addAttribute("quantity", quantity);
+        model.addAttribute("hold", hold);
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
         return "confirm-ticket-purchase";
     }
 
@@ -144,6 +203,9 @@ public class TicketController {
             @RequestParam("ticketTypeId") Long ticketTypeId,
             @RequestParam("eventId") Long eventId,
             @RequestParam("quantity") Integer quantity,
+            @RequestParam(value = "holdId", required = false) Long holdId,
+            @RequestParam(value = "idempotencyKey", required = false) String idempotencyKey,
+            HttpSession session,
             Model model) {
 
         // Debugging log
@@ -175,29 +237,54 @@ public class TicketController {
         EventModel event = eventOpt.get();
         TicketTypeModel ticketType = ticketTypeOpt.get();
 
-        if (ticketType.getRemainingQuantity() < quantity) {
-            model.addAttribute("error", "Not enough tickets available for this type.");
+        // The waiting room, the ticket and its sales totals all go by the event, so it must be the ticket type's own
+        if (!ticketType.getEvent().getId().equals(event.getId())) {
+            model.addAttribute("error", "Invalid event or ticket type.");
+            return "confirm-ticket-purchase";
+        }
+
+        if (quantity == null || quantity <= 0 || quantity > ticketHoldService.getMaxPerOrder()) {
+            model.addAttribute("error", "You can buy between 1 and " + ticketHoldService.getMaxPerOrder() + " tickets per order.");
+            return "confirm-ticket-purchase";
+        }
+
+        // A resubmitted form (double click, browser retry) gets the ticket of the first submission
+        String purchaseRequest = "ticketType=" + ticketTypeId + ";quantity=" + quantity + ";hold=" + holdId;
+        Optional<TicketModel> earlier = purchaseIdempotencyService.findCompleted(idempotencyKey, user.getId(), purchaseRequest);
+        if (earlier.isPresent()) {
+            return "redirect:/tickets/success?ticketCode=" + earlier.get().getTicketCode();
+        }
+
+        // A hold was only placed after admission; a direct purchase still needs one
+        if (holdId == null && ticketType.getEvent().isWaitingRoomEnabled() && !isAdmitted(eventId, session)) {
+            return "redirect:/queue/" + eventId + "?ticketTypeId=" + ticketTypeId + "&quantity=" + quantity;
+        }
+
+        // Convert the reservation, or take the tickets directly; either fails rather than oversell
+        PurchaseIdempotencyService.Outcome outcome;
+        try {
+            outcome = purchaseIdempotencyService.purchase(idempotencyKey, user.getId(), purchaseRequest, () -> holdId != null
+                    ? ticketHoldService.confirm(holdId, user)
+                    : ticketInventoryService.purchase(user, event, ticketType, quantity));
+        } catch (HoldExpiredException | InsufficientInventoryException | IllegalArgumentException | IllegalStateException e) {
+            model.addAttribute("error", e.getMessage());
+            model.addAttribute("ticketType", ticketType);
+            model.addAttribute("quantity", quantity);
+            model.addAttribute("idempotencyKey", idempotencyKey);
             return "confirm-ticket-purchase";
         }
+        TicketModel ticket = outcome.ticket();
+        if (outcome.replayed()) {
+            // Completed by a concurrent submission of the same form, which does the logging
+            return "redirect:/tickets/success?ticketCode=" + ticket.getTicketCode();
+        }
 
-        // Create and populate the ticket
-        TicketModel ticket = new TicketModel();
-        ticket.setUser(user);
-        ticket.setEvent(event);
-        ticket.setTicketType(ticketType);
-        ticket.setQuantity(quantity);
-        ticket.setPrice(ticketType.getPrice() * quantity);
-        ticket.setTicketCode(generateTicketCode());
-        ticket.setPurchaseDate(LocalDateTime.now());
-        ticket.setCreatedAt(LocalDateTime.now());
-        ticket.setUpdatedAt(LocalDateTime.now());
-
-        // Save the ticket
-        ticketService.saveTicket(ticket);
-
-        // Update remaining quantity in ticket type
-        ticketType.setRemainingQuantity(ticketType.getRemainingQuantity() - quantity);
-        ticketTypeService.saveTicketType(ticketType);
+        // Done with the waiting room; give the purchase slot to the next buyer
+        String queueToken = (String) session.getAttribute(WaitingRoomService.sessionAttribute(eventId));
+        if (queueToken != null) {
+            waitingRoomService.release(eventId, queueToken);
+            session.removeAttribute(WaitingRoomService.sessionAttribute(eventId));
+        }
 
         // Retrieve the user's location
         String userLocation = user.getCity();
@@ -205,7 +292,7 @@ public class TicketController {
 
 
         String interactionType = "purchase";
-        // Log user purchase activity
+        // Log user purchase activity; queued for BehaviourIngestionService, so it does not delay the response
         userBehaviourService.logUserBehaviour(
                 user.getId(),
                 eventId,
@@ -231,6 +318,31 @@ public class TicketController {
 
 
 
+    // The view to return if the ticket type or quantity cannot be bought, else null
+    private String checkQuantity(TicketTypeModel ticketType, Integer quantity, Model model) {
+        if (ticketType == null) {
+            model.addAttribute("error", "Invalid ticket type.");
+            return "error";
+        }
+
+        if (ticketType.getRemainingQuantity() <= 0) {
+            model.addAttribute("error", "This ticket type is sold out.");
+            return "error";
+        }
+
+        if (quantity == null || quantity <= 0 || quantity > ticketType.getRemainingQuantity()
+                || quantity > ticketHoldService.getMaxPerOrder()) {
+            model.addAttribute("error", "Please select a valid quantity.");
+            return "redirect:/events/details/" + ticketType.getEvent().getId();
+        }
+        return null;
+    }
+
+    private boolean isAdmitted(Long eventId, HttpSession session) {
+        return waitingRoomService.isAdmitted(eventId, (String) session.getAttribute(WaitingRoomService.sessionAttribute(eventId)));
+    }
+
+
     @GetMapping("/success")
     public String showPurchaseSuccess(@RequestParam("ticketCode") String ticketCode, Model model) {
         model.addAttribute("ticketCode", ticketCode);
@@ -239,11 +351,6 @@ public class TicketController {
 
 
 
-    // Helper method to generate a unique ticket code
-    private String generateTicketCode() {
-        return UUID.randomUUID().toString();
-    }
-
     /**
      * Endpoint to verify a ticket based on its ticket code.
      *
@@ -259,25 +366,18 @@ public class TicketController {
     }
 
     @PostMapping("/verify")
-    public String verifyTicket(@RequestParam("ticketCode") String ticketCode, Model model) {
-        // Retrieve the ticket by the ticketCode
-        TicketModel ticket = ticketService.getTicketByTicketCode(ticketCode);
-
-        if (ticket == null) {
-            model.addAttribute("error", "Ticket not found or invalid ticket code.");
-            return "ticket-verification-error";  // Error page if the ticket is invalid
-        }
-
-        // Check if the ticket has already been scanned
-        if (ticket.getIsScanned()) {
-            model.addAttribute("error", "This ticket has already been scanned.");
-            return "ticket-verification-error";  // Error page if the ticket is already scanned
+    public String verifyTicket(@RequestParam("ticketCode") String ticketCode,
+                               @RequestParam(value = "eventId", required = false) Long eventId,
+                               Model model) {
+        // One conditional update decides the scan; concurrent scans of the same code cannot both pass
+        CheckInService.Result result = checkInService.checkIn(ticketCode, eventId);
+        if (result.outcome() != CheckInService.Outcome.CHECKED_IN) {
+            model.addAttribute("error", result.message());
+            return "ticket-verification-error";  // Error page if the ticket is invalid or already scanned
         }
 
-        // Mark the ticket as scanned and update the scanned time
-        ticket.setIsScanned(true);
-        ticket.setScannedAt(LocalDateTime.now());
-        ticketService.saveTicket(ticket);
+        // Load the ticket only to show its details
+        TicketModel ticket = ticketService.getTicketById(result.ticketId());
 
         // Retrieve the user email and event details
         UserModel user = ticket.getUser();
@@ -3,9 +3,11 @@ package com.example.evenue.controller.user;
 import com.example.evenue.models.events.EventCategory;
 import com.example.evenue.models.events.EventCategoryDao;
 import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.events.EventOption;
 import com.example.evenue.models.tickets.TicketModel;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.EventService;
+import com.example.evenue.service.ReferenceDataCache;
 import com.example.evenue.service.TicketService;
 import com.example.evenue.service.UserService;
 import com.example.evenue.models.users.Role;
@@ -24,8 +26,6 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
-import java.time.chrono.ChronoLocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -35,6 +35,9 @@ import java.util.stream.Collectors;
 @SessionAttributes("userId") // Using Spring's session management
 public class UserController {
 
+    // Largest page the "my tickets" and "upcoming events" pages will load, whatever size is asked for
+    private static final int MAX_PAGE_SIZE = 50;
+
     private final UserService userService; // Inject UserService
     private final BCryptPasswordEncoder passwordEncoder;
 
@@ -54,6 +57,9 @@ public class UserController {
     @Autowired
     EventCategoryDao eventCategoryDao;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
 
     // Serve the registration page
     @GetMapping("/register")
@@ -145,7 +151,7 @@ public class UserController {
         // Create a Pageable object with page number and size
         Pageable pageable = PageRequest.of(page, size);
         // Fetch all events for the dropdown (without pagination)
-        List<EventModel> allEventsForDropdown = eventService.getAllEventsForDropdown();
+        List<EventOption> allEventsForDropdown = eventService.getAllEventsForDropdown();
 
         // Fetch the paginated list of events
         Page<EventModel> events = eventService.getAllEvents(pageable);
@@ -306,7 +312,9 @@ public class UserController {
 
     // Serve the logged-in user's tickets page
     @GetMapping("/tickets")
-    public String getUserTickets(Model model) {
+    public String getUserTickets(Model model,
+                                 @RequestParam(defaultValue = "0") int page,
+                                 @RequestParam(defaultValue = "10") int size) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             return "redirect:/users/login"; // If the user is not authenticated, redirect to login
@@ -318,16 +326,22 @@ public class UserController {
             return "redirect:/users/login"; // If user not found, redirect to login
         }
 
-        // Fetch the user's tickets using the user ID
-        List<TicketModel> userTickets = ticketService.getTicketsByUserId(user.getId());
-        model.addAttribute("tickets", userTickets); // Add tickets to the model
+        // Fetch one page of the user's tickets, with their events and ticket types in the same query
+        PageRequest pageRequest = pageRequest(page, size);
+        Page<TicketModel> userTickets = ticketService.getTicketPageByUserId(user.getId(), pageRequest);
+        model.addAttribute("tickets", userTickets.getContent()); // Add tickets to the model
+        model.addAttribute("currentPage", pageRequest.getPageNumber());
+        model.addAttribute("totalPages", userTickets.getTotalPages());
+        model.addAttribute("size", pageRequest.getPageSize());
 
         return "user-tickets"; // Return the Thymeleaf template for displaying user tickets
     }
 
     // Serve the upcoming events for which the logged-in user has purchased tickets
     @GetMapping("/upcoming-events")
-    public String getUserUpcomingEvents(Model model) {
+    public String getUserUpcomingEvents(Model model,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "10") int size) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             return "redirect:/users/login"; // If the user is not authenticated, redirect to login
@@ -339,21 +353,23 @@ public class UserController {
             return "redirect:/users/login"; // Redirect to login if user not found
         }
 
-        // Fetch the user's tickets
-        List<TicketModel> userTickets = ticketService.getTicketsByUserId(user.getId());
+        // Fetch one page of the upcoming events the user has tickets for; date filter and de-duplication run in SQL
+        PageRequest pageRequest = pageRequest(page, size);
+        Page<EventModel> upcomingEvents = eventService.getUpcomingEventsForTicketHolder(user.getId(), pageRequest);
 
-        // Extract the events from the tickets and filter for upcoming events
-        LocalDateTime now = LocalDateTime.now();
-        List<EventModel> upcomingEvents = userTickets.stream()
-                .map(TicketModel::getEvent) // Get the event associated with each ticket
-                .filter(event -> event.getEventDate().isAfter(ChronoLocalDate.from(now))) // Filter only future events
-                .distinct() // Ensure the same event is not added multiple times
-                .collect(Collectors.toList());
-
-        model.addAttribute("events", upcomingEvents); // Add events to the model
+        model.addAttribute("events", upcomingEvents.getContent()); // Add events to the model
+        model.addAttribute("currentPage", pageRequest.getPageNumber());
+        model.addAttribute("totalPages", upcomingEvents.getTotalPages());
+        model.addAttribute("size", pageRequest.getPageSize());
         return "user-upcoming-events"; // Return the Thymeleaf template for displaying upcoming events
     }
 
+    // Page request from user-supplied paging parameters: a negative page is the first page,
+    // and the size is kept between 1 and MAX_PAGE_SIZE
+    private static PageRequest pageRequest(int page, int size) {
+        return PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+    }
+
     // Method to render the form with categories
     @GetMapping("/preferred-categories")
     public String showPreferredCategoriesForm(Model model) {
@@ -365,7 +381,7 @@ public class UserController {
         UserModel user = userService.findUserByEmail(email);  // Assuming you have a findByEmail method
 
         // Fetch all event categories
-        List<EventCategory> categories = eventCategoryDao.findAll();
+        List<EventCategory> categories = referenceDataCache.getCategories();
 
         // Add user and categories to the model
         model.addAttribute("user", user);
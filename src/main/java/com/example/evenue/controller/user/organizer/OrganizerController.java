@@ -1,19 +1,35 @@
 package com.example.evenue.controller.user.organizer;
 
 import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.tickets.EventSalesSummary;
 import com.example.evenue.models.users.Role;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.models.events.EventDao;
+import com.example.evenue.service.AttendeeExportService;
+import com.example.evenue.service.InteractionRollupService;
+import com.example.evenue.service.TicketSalesService;
 import com.example.evenue.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Controller
 @RequestMapping("/organizer")
@@ -25,6 +41,15 @@ public class OrganizerController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TicketSalesService ticketSalesService;
+
+    @Autowired
+    private AttendeeExportService attendeeExportService;
+
+    @Autowired
+    private InteractionRollupService interactionRollupService;
+
     @GetMapping("/dashboard")
     public String dashboard(Model model) {
         // Get the currently authenticated user
@@ -35,12 +60,26 @@ public class OrganizerController {
         if (organizer == null || organizer.getRole() == null || organizer.getRole() != Role.ORGANIZER) {
             return "redirect:/users/login";
         }
-
-
+        // Event counts and sales totals; the totals are kept per ticket type, so this reads no tickets
+        long totalEvents = eventDao.countByOrganizerId(organizer.getId());
+        long upcomingEvents = eventDao.countByOrganizerIdAndEventDateGreaterThanEqual(organizer.getId(), LocalDate.now());
+        long ticketsSold = 0;
+        long ticketsScanned = 0;
+        double revenue = 0;
+        for (EventSalesSummary sales : ticketSalesService.getSalesByEvent(organizer.getId()).values()) {
+            ticketsSold += sales.getTicketsSold();
+            ticketsScanned += sales.getTicketsScanned();
+            revenue += sales.getRevenue();
+        }
 
         // Add attributes to the model
         model.addAttribute("organizer", organizer);
-
+        model.addAttribute("totalEvents", totalEvents);
+        model.addAttribute("upcomingEvents", upcomingEvents);
+        model.addAttribute("pastEvents", totalEvents - upcomingEvents);
+        model.addAttribute("ticketsSold", ticketsSold);
+        model.addAttribute("ticketsScanned", ticketsScanned);
+        model.addAttribute("revenue", revenue);
 
         // Return the view name
         return "organizer-dashboard";
@@ -60,11 +99,71 @@ public class OrganizerController {
 
         // Fetch events created by this organizer
         List<EventModel> events = eventDao.findByOrganizerId(Long.valueOf(organizer.getId()));
+        Map<Long, EventSalesSummary> salesByEvent = ticketSalesService.getSalesByEvent(organizer.getId());
+
+        // Interactions over the last 30 days, from the daily rollups
+        LocalDate today = LocalDate.now();
+        Map<Long, Map<String, Long>> interactionsByEvent = interactionRollupService.getEventCounts(
+                events.stream().map(EventModel::getId).toList(), today.minusDays(29), today);
 
         // Add attributes to the model
         model.addAttribute("events", events);
+        model.addAttribute("salesByEvent", salesByEvent);
+        model.addAttribute("interactionsByEvent", interactionsByEvent);
 
         // Return the view name for the organizer events page
         return "organizer-events";
     }
+
+    // Turn the waiting room of one of the organizer's events on or off
+    @PostMapping("/events/{eventId}/waiting-room")
+    public String setWaitingRoom(@PathVariable Long eventId, @RequestParam("enabled") boolean enabled) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        UserModel organizer = userService.findUserByEmail(auth.getName());
+
+        if (organizer == null || organizer.getRole() == null || organizer.getRole() != Role.ORGANIZER) {
+            return "redirect:/users/login";
+        }
+
+        // Only matches the organizer's own events
+        eventDao.updateWaitingRoomEnabled(eventId, organizer.getId(), enabled);
+        return "redirect:/organizer/events";
+    }
+
+    // Attendee list of one of the organizer's events as CSV, streamed row by row
+    @GetMapping("/events/{eventId}/attendees.csv")
+    public ResponseEntity<StreamingResponseBody> exportAttendeesCsv(@PathVariable Long eventId) {
+        if (!isOwnEvent(eventId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"event-" + eventId + "-attendees.csv\"")
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(out -> attendeeExportService.writeCsv(eventId, out));
+    }
+
+    // Attendee list of one of the organizer's events as newline-delimited JSON, streamed row by row
+    @GetMapping("/events/{eventId}/attendees.ndjson")
+    public ResponseEntity<StreamingResponseBody> exportAttendeesNdjson(@PathVariable Long eventId) {
+        if (!isOwnEvent(eventId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"event-" + eventId + "-attendees.ndjson\"")
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(out -> attendeeExportService.writeNdjson(eventId, out));
+    }
+
+    // Whether the current user is an organizer and the event is theirs
+    private boolean isOwnEvent(Long eventId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        UserModel organizer = userService.findUserByEmail(auth.getName());
+        if (organizer == null || organizer.getRole() != Role.ORGANIZER) {
+            return false;
+        }
+        Optional<EventModel> event = eventDao.findById(eventId);
+        return event.isPresent() && organizer.getId().equals(event.get().getOrganizerId());
+    }
 }
@@ -5,10 +5,15 @@ import com.example.evenue.models.users.UserModel;
 import com.example.evenue.service.EventService;
 import com.example.evenue.service.UserBehaviourService;
 import com.example.evenue.service.UserService;
+import com.example.evenue.models.userBehaviour.BehaviourBeacon;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -17,6 +22,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.io.IOException;
 import java.util.Map;
 
 @Controller
@@ -35,78 +41,81 @@ public class UserBehaviourController {
     @Autowired
     private UserBehaviourService userBehaviourService;
 
-    @PostMapping(value = "/save-behaviour", consumes = "text/plain")
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${evenue.behaviour.max-beacon-events:100}")
+    private int maxBeaconEvents;
+
+    // Single interaction, as sent by pages before the batched beacon
+    @PostMapping(value = "/save-behaviour", consumes = {"text/plain", "application/json"})
     @ResponseBody
     public ResponseEntity<String> saveUserBehaviour(@RequestBody String data, Authentication authentication) {
-        // Log to see if the method is triggered
-        System.out.println("save behaviour request received with text/plain content type");
-
-        // Parse the plain text data to extract JSON
-        Map<String, Object> jsonData;
+        BehaviourBeacon beacon;
         try {
-            jsonData = new ObjectMapper().readValue(data, new TypeReference<Map<String, Object>>() {});
+            beacon = objectMapper.readValue(data, BehaviourBeacon.class);
         } catch (JsonProcessingException e) {
-            throw new RuntimeException("Error parsing JSON data", e);
+            return ResponseEntity.badRequest().body("Malformed behaviour data");
         }
 
-        // Fetch the logged-in user
-        String userEmail = authentication.getName();
-        UserModel loggedInUser = userService.findUserByEmail(userEmail);
-
-        // Extract necessary data from the payload
-        Long eventId = jsonData.get("eventId") != null ? Long.valueOf(String.valueOf(jsonData.get("eventId"))) : null;
-        Long eventCategoryId = jsonData.get("eventCategoryId") != null ? Long.valueOf(String.valueOf(jsonData.get("eventCategoryId"))) : null;
-        String eventLocation = jsonData.get("eventLocation") != null ? (String) jsonData.get("eventLocation") : null;
-        String interactionType = (String) jsonData.get("interactionType");
-        Integer FriendId = jsonData.get("FriendId") != null ? ((Integer) jsonData.get("FriendId")) : null;
-        Integer ticketQuantity = jsonData.get("ticketQuantity") != null ? ((Integer) jsonData.get("ticketQuantity")) : null;
-        Double timeSpent = ((Number) jsonData.get("timeSpent")).doubleValue();
-        Map<String, Object> filterTypeMap = (Map<String, Object>) jsonData.get("filterType");
-
-        // Initialize filter variables
-        String dateFilter = null;
-        String priceFilter = null;
-        String locationFilter = null;
-
-        // Save filter values if present
-        if (filterTypeMap != null) {
-            dateFilter = (String) filterTypeMap.get("date");
-            priceFilter = (String) filterTypeMap.get("price");
-            locationFilter = (String) filterTypeMap.get("location");
+        if (!userBehaviourService.isAcceptedBeacon(beacon)) {
+            return ResponseEntity.badRequest().body("Unsupported interaction");
         }
 
-        // Retrieve the user's location
-        String userLocation = loggedInUser.getCity();
-
-//        System.out.println("Event Location from payload: " + eventLocation);
-//        // Log received data for verification
-//        System.out.println("User Email: " + userEmail);
-//        System.out.println("Event ID: " + eventId);
-//        System.out.println("Event Location: " + eventLocation);
-//        System.out.println("Event Category ID: " + eventCategoryId);
-//        System.out.println("Interaction Type: " + interactionType);
-//        System.out.println("Time Spent: " + timeSpent + " seconds");
-
-        // Log user behaviour
-        userBehaviourService.logUserBehaviour(
-                loggedInUser.getId(),
-                eventId,
-                interactionType,  // Use interaction type from payload
-                eventLocation,  // Event location can be added if required
-                dateFilter,  // Date filter
-                priceFilter,  // Price filter
-                locationFilter,  // Location filter
-                timeSpent,  // Time spent
-                FriendId,  // Friend ID if applicable
-                ticketQuantity,  // ticket quantity action if applicable
-                eventCategoryId,   // Event category ID if applicable
-                userLocation
-
-        );
+        UserModel loggedInUser = userService.findUserByEmail(authentication.getName());
+        if (!userBehaviourService.logBeacon(loggedInUser.getId(), loggedInUser.getCity(), beacon)) {
+            return ResponseEntity.ok("Behaviour already logged");
+        }
+        return ResponseEntity.ok("Behaviour logged successfully");
+    }
 
-        // Log received data for verification
-        System.out.println("User Behaviour logged: Time Spent: " + timeSpent + " seconds, Interaction Type: " + interactionType);
+    /**
+     * Interactions buffered by a page (see behaviour-buffer.html), sent as one JSON array by
+     * navigator.sendBeacon. The array is read one record at a time, so a batch is never held
+     * in memory as a whole; records after maxBeaconEvents are not read. Retried records are
+     * recognised by their clientEventId and counted as duplicates; interactions a page may not
+     * report are counted as rejected.
+     */
+    @PostMapping(value = "/batch", consumes = {"text/plain", "application/json"}, produces = "application/json")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> saveBehaviourBatch(HttpServletRequest request, Authentication authentication) {
+        UserModel loggedInUser = userService.findUserByEmail(authentication.getName());
+        int accepted = 0;
+        int duplicates = 0;
+        int rejected = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Expected a JSON array of interactions."));
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (accepted + duplicates + rejected >= maxBeaconEvents) {
+                    break;
+                }
+                // Each record is read on its own, so one bad record does not lose the rest of the batch
+                JsonNode record = parser.readValueAsTree();
+                BehaviourBeacon beacon;
+                try {
+                    beacon = record.isObject() ? objectMapper.treeToValue(record, BehaviourBeacon.class) : null;
+                } catch (JsonProcessingException e) {
+                    beacon = null;
+                }
+                if (beacon == null || !userBehaviourService.isAcceptedBeacon(beacon)) {
+                    rejected++;
+                } else if (userBehaviourService.logBeacon(loggedInUser.getId(), loggedInUser.getCity(), beacon)) {
+                    accepted++;
+                } else {
+                    duplicates++;
+                }
+            }
+        } catch (IOException e) {
+            // Records before the malformed part are already logged; a retry is deduplicated
+            return ResponseEntity.badRequest().body(Map.of("error", "Malformed behaviour batch."));
+        }
 
-        return ResponseEntity.ok("Behaviour logged successfully");
+        return ResponseEntity.accepted().body(Map.of(
+                "accepted", accepted,
+                "duplicates", duplicates,
+                "rejected", rejected));
     }
 }
@@ -1,6 +1,6 @@
 package com.example.evenue.controller.wishlist;
 
-import com.example.evenue.models.events.EventDao;
+import com.example.evenue.models.events.EventCard;
 import com.example.evenue.models.events.EventModel;
 import com.example.evenue.models.users.UserModel;
 import com.example.evenue.models.wishlist.WishlistModel;
@@ -35,14 +35,14 @@ public class WishlistController {
     @Autowired
     private EventService eventService;
 
-    @Autowired
-    private EventDao eventDao;
-
     @Autowired
     private UserBehaviourService userBehaviourService;
 
     private static final Logger logger = LoggerFactory.getLogger(WishlistController.class);
 
+    // Number of upcoming events shown in the featured carousel under the wishlist
+    private static final int FEATURED_EVENT_LIMIT = 12;
+
 
     @GetMapping
     public String getWishlistByUser(Model model) {
@@ -66,8 +66,8 @@ public class WishlistController {
             // Add the list of wishlist items to the model, for rendering in the view
             model.addAttribute("wishlistItems", wishlistItems);
 
-            // Fetch all events from the database
-            List<EventModel> events = eventDao.findAll();
+            // Fetch card data for the featured carousel rather than every full event
+            List<EventCard> events = eventService.getUpcomingEventCards(FEATURED_EVENT_LIMIT);
 
             // Add the events list to the model to be used in the view
             model.addAttribute("events", events);
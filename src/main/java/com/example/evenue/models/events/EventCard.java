@@ -0,0 +1,25 @@
+package com.example.evenue.models.events;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Column projection of an event for list/card views; never loads description or category
+public interface EventCard {
+    Long getId();
+
+    String getEventName();
+
+    LocalDate getEventDate();
+
+    LocalTime getStartTime();
+
+    String getLocation();
+
+    String getVenue();
+
+    String getOrganizerName();
+
+    Double getFromPrice(); // Cheapest ticket type, falling back to the event's ticket price
+
+    String getEventImage(); // /media/{hash} reference
+}
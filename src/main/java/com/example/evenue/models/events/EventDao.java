@@ -3,11 +3,15 @@ package com.example.evenue.models.events;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,16 +36,27 @@ public interface EventDao extends JpaRepository<EventModel, Long> {
             @Param("location") String location,
             Pageable pageable);
 
-    @Query("SELECT DISTINCT e FROM EventModel e LEFT JOIN e.ticketTypes t " +
-            "WHERE (:search IS NULL OR LOWER(e.eventName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+    // Keyset page in listing order: rows strictly after the cursor (createdAt DESC, id DESC).
+    // A null cursor returns the first page; restrictIds limits the rows to search candidates.
+    // The stored price range rules events out cheaply; a range bounded at both ends also needs
+    // a ticket type priced inside it, since an event can have tickets either side of the range
+    @Query("SELECT e FROM EventModel e " +
+            "WHERE (:restrictIds = false OR e.id IN :ids) " +
+            "AND (:search IS NULL OR LOWER(e.eventName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
             "LOWER(e.location) LIKE LOWER(CONCAT('%', :search, '%'))) " +
             "AND (COALESCE(:categories, NULL) IS NULL OR e.eventCategory.id IN :categories) " +
-            "AND (COALESCE(:location, NULL) IS NULL OR LOWER(e.location) LIKE LOWER(CONCAT('%', :location, '%'))) " +
+            "AND (:location IS NULL OR LOWER(e.location) LIKE LOWER(CONCAT('%', :location, '%'))) " +
             "AND (:startDate IS NULL OR e.eventDate BETWEEN :startDate AND :endDate) " +
-            "AND (:minPrice IS NULL OR t.price >= :minPrice) " +
-            "AND (:maxPrice IS NULL OR t.price <= :maxPrice) " +
-            "ORDER BY e.createdAt DESC")
-    Page<EventModel> findByFilters(
+            "AND (:minPrice IS NULL OR e.maxPrice >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR e.minPrice <= :maxPrice) " +
+            "AND (:minPrice IS NULL OR :maxPrice IS NULL OR EXISTS (SELECT 1 FROM TicketTypeModel t " +
+            "WHERE t.event.id = e.id AND t.price BETWEEN :minPrice AND :maxPrice)) " +
+            "AND (:cursorCreatedAt IS NULL OR e.createdAt < :cursorCreatedAt OR " +
+            "(e.createdAt = :cursorCreatedAt AND e.id < :cursorId)) " +
+            "ORDER BY e.createdAt DESC, e.id DESC")
+    List<EventModel> findKeysetAfter(
+            @Param("restrictIds") boolean restrictIds,
+            @Param("ids") Collection<Long> ids,
             @Param("categories") List<Long> categories,
             @Param("search") String search,
             @Param("startDate") LocalDate startDate,
@@ -49,15 +64,123 @@ public interface EventDao extends JpaRepository<EventModel, Long> {
             @Param("minPrice") Double minPrice,
             @Param("maxPrice") Double maxPrice,
             @Param("location") String location,
-            Pageable pageable);
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable limit);
+
+    // Keyset page walking backwards: rows strictly before the cursor, nearest first
+    @Query("SELECT e FROM EventModel e " +
+            "WHERE (:restrictIds = false OR e.id IN :ids) " +
+            "AND (:search IS NULL OR LOWER(e.eventName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(e.location) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+            "AND (COALESCE(:categories, NULL) IS NULL OR e.eventCategory.id IN :categories) " +
+            "AND (:location IS NULL OR LOWER(e.location) LIKE LOWER(CONCAT('%', :location, '%'))) " +
+            "AND (:startDate IS NULL OR e.eventDate BETWEEN :startDate AND :endDate) " +
+            "AND (:minPrice IS NULL OR e.maxPrice >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR e.minPrice <= :maxPrice) " +
+            "AND (:minPrice IS NULL OR :maxPrice IS NULL OR EXISTS (SELECT 1 FROM TicketTypeModel t " +
+            "WHERE t.event.id = e.id AND t.price BETWEEN :minPrice AND :maxPrice)) " +
+            "AND (e.createdAt > :cursorCreatedAt OR " +
+            "(e.createdAt = :cursorCreatedAt AND e.id > :cursorId)) " +
+            "ORDER BY e.createdAt ASC, e.id ASC")
+    List<EventModel> findKeysetBefore(
+            @Param("restrictIds") boolean restrictIds,
+            @Param("ids") Collection<Long> ids,
+            @Param("categories") List<Long> categories,
+            @Param("search") String search,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("minPrice") Double minPrice,
+            @Param("maxPrice") Double maxPrice,
+            @Param("location") String location,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable limit);
+
+    // Total matching the keyset filters; only run when a count is not cached
+    @Query("SELECT COUNT(e) FROM EventModel e " +
+            "WHERE (:restrictIds = false OR e.id IN :ids) " +
+            "AND (:search IS NULL OR LOWER(e.eventName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(e.location) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+            "AND (COALESCE(:categories, NULL) IS NULL OR e.eventCategory.id IN :categories) " +
+            "AND (:location IS NULL OR LOWER(e.location) LIKE LOWER(CONCAT('%', :location, '%'))) " +
+            "AND (:startDate IS NULL OR e.eventDate BETWEEN :startDate AND :endDate) " +
+            "AND (:minPrice IS NULL OR e.maxPrice >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR e.minPrice <= :maxPrice) " +
+            "AND (:minPrice IS NULL OR :maxPrice IS NULL OR EXISTS (SELECT 1 FROM TicketTypeModel t " +
+            "WHERE t.event.id = e.id AND t.price BETWEEN :minPrice AND :maxPrice))")
+    long countByKeysetFilters(
+            @Param("restrictIds") boolean restrictIds,
+            @Param("ids") Collection<Long> ids,
+            @Param("categories") List<Long> categories,
+            @Param("search") String search,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("minPrice") Double minPrice,
+            @Param("maxPrice") Double maxPrice,
+            @Param("location") String location);
+
+    // Recompute the denormalised price range of one event from its ticket types
+    @Modifying
+    @Transactional
+    @Query("UPDATE EventModel e SET " +
+            "e.minPrice = (SELECT MIN(t.price) FROM TicketTypeModel t WHERE t.event.id = e.id), " +
+            "e.maxPrice = (SELECT MAX(t.price) FROM TicketTypeModel t WHERE t.event.id = e.id) " +
+            "WHERE e.id = :eventId")
+    void refreshPriceRange(@Param("eventId") Long eventId);
+
+    // Fill the price range for events created before the columns existed. Events without ticket
+    // types have no range, so they are left NULL rather than recomputed on every start
+    @Modifying
+    @Transactional
+    @Query("UPDATE EventModel e SET " +
+            "e.minPrice = (SELECT MIN(t.price) FROM TicketTypeModel t WHERE t.event.id = e.id), " +
+            "e.maxPrice = (SELECT MAX(t.price) FROM TicketTypeModel t WHERE t.event.id = e.id) " +
+            "WHERE e.minPrice IS NULL AND EXISTS (SELECT 1 FROM TicketTypeModel t WHERE t.event.id = e.id)")
+    int backfillPriceRanges();
+
+    // Turn the waiting room of an organizer's own event on or off
+    @Modifying
+    @Transactional
+    @Query("UPDATE EventModel e SET e.waitingRoomEnabled = :enabled WHERE e.id = :eventId AND e.organizerId = :organizerId")
+    int updateWaitingRoomEnabled(@Param("eventId") Long eventId, @Param("organizerId") Integer organizerId,
+                                 @Param("enabled") Boolean enabled);
+
+    // Only the text columns needed to build the search index
+    @Query("SELECT e.id, e.eventName, e.location, e.venue, e.description FROM EventModel e")
+    List<Object[]> findSearchableFields();
 
     Page<EventModel> findAll(Pageable pageable);
 
     List<EventModel> findByOrganizerId(Long organizerId);
 
+    // Page of events on or after the given date that the user holds tickets for, soonest first.
+    // The IN sub-select is a semi-join, so an event appears once however many tickets the user has.
+    @Query(value = "SELECT e FROM EventModel e JOIN FETCH e.eventCategory WHERE e.eventDate >= :fromDate " +
+            "AND e.id IN (SELECT t.event.id FROM TicketModel t WHERE t.user.id = :userId) ORDER BY e.eventDate ASC, e.id ASC",
+            countQuery = "SELECT COUNT(e) FROM EventModel e WHERE e.eventDate >= :fromDate " +
+                    "AND e.id IN (SELECT t.event.id FROM TicketModel t WHERE t.user.id = :userId)")
+    Page<EventModel> findUpcomingByTicketHolder(@Param("userId") Integer userId, @Param("fromDate") LocalDate fromDate,
+                                                Pageable pageable);
+
+    long countByOrganizerId(Integer organizerId);
+
+    long countByOrganizerIdAndEventDateGreaterThanEqual(Integer organizerId, LocalDate fromDate);
+
     Optional<EventModel> findByEventName(String eventName);
 
     @Query("SELECT e FROM EventModel e")
     List<EventModel> findAllEvents();
 
+    // Id and name only, for event dropdowns
+    @Query("SELECT e.id AS id, e.eventName AS eventName FROM EventModel e")
+    List<EventOption> findAllEventOptions();
+
+    // Card columns of events on or after the given date, soonest first
+    @Query("SELECT e.id AS id, e.eventName AS eventName, e.eventDate AS eventDate, e.startTime AS startTime, " +
+            "e.location AS location, e.venue AS venue, e.organizerName AS organizerName, " +
+            "COALESCE(e.minPrice, e.ticketPrice) AS fromPrice, e.eventImage AS eventImage " +
+            "FROM EventModel e WHERE e.eventDate >= :fromDate ORDER BY e.eventDate ASC, e.id ASC")
+    List<EventCard> findUpcomingEventCards(@Param("fromDate") LocalDate fromDate, Pageable pageable);
+
 }
@@ -9,7 +9,11 @@ import java.time.chrono.ChronoLocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = {
+        @Index(name = "idx_events_created_at_id", columnList = "created_at, event_id"), // Keyset pagination order
+        @Index(name = "idx_events_min_price", columnList = "min_price"),
+        @Index(name = "idx_events_max_price", columnList = "max_price")
+})
 public class EventModel {
 
     @Id
@@ -41,12 +45,21 @@ public class EventModel {
     @Column(name = "ticket_price", nullable = false)
     private Double ticketPrice; // Price of the ticket
 
+    @Column(name = "min_price")
+    private Double minPrice; // Cheapest ticket type, maintained by TicketTypeService
+
+    @Column(name = "max_price")
+    private Double maxPrice; // Most expensive ticket type, maintained by TicketTypeService
+
     @Column(name = "event_image")
     private String eventImage; // URL or path to the event image
 
     @Column(nullable = false)
     private String venue; // Venue of the event
 
+    @Column(name = "waiting_room_enabled")
+    private Boolean waitingRoomEnabled; // Buyers go through the admission queue before purchasing
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now(); // Creation timestamp
 
@@ -169,6 +182,27 @@ public class EventModel {
         this.ticketPrice = ticketPrice;
     }
 
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    // Price shown as "From £": the cheapest ticket type, or the event's ticket price before it has any
+    public Double getFromPrice() {
+        return minPrice != null ? minPrice : ticketPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
     public String getEventImage() {
         return eventImage;
     }
@@ -185,6 +219,19 @@ public class EventModel {
         this.venue = venue;
     }
 
+    public Boolean getWaitingRoomEnabled() {
+        return waitingRoomEnabled;
+    }
+
+    public void setWaitingRoomEnabled(Boolean waitingRoomEnabled) {
+        this.waitingRoomEnabled = waitingRoomEnabled;
+    }
+
+    // Null for events created before the column existed
+    public boolean isWaitingRoomEnabled() {
+        return Boolean.TRUE.equals(waitingRoomEnabled);
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,8 @@
+package com.example.evenue.models.events;
+
+// Column projection of an event for select dropdowns
+public interface EventOption {
+    Long getId();
+
+    String getEventName();
+}
@@ -1,6 +1,8 @@
 package com.example.evenue.models.posts;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,4 +13,11 @@ public interface PostDao extends JpaRepository<PostModel, Long> {
     List<PostModel> findAllByEventId(Long eventId);
     List<PostModel> findByUserId(Long userId);
     List<PostModel> findAllByOrderByCreatedAtDesc();
+
+    // Plain substring search used when the FTS backend is not enabled
+    @Query("SELECT p FROM PostModel p " +
+            "WHERE LOWER(p.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(p.content) LIKE LOWER(CONCAT('%', :search, '%')) " +
+            "ORDER BY p.createdAt DESC")
+    List<PostModel> searchByTitleOrContent(@Param("search") String search);
 }
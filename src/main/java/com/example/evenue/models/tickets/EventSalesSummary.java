@@ -0,0 +1,16 @@
+package com.example.evenue.models.tickets;
+
+import java.time.LocalDateTime;
+
+// Sales totals of an event (or of all of an organizer's events) across its ticket types
+public interface EventSalesSummary {
+    Long getEventId();
+
+    Long getTicketsSold();
+
+    Double getRevenue();
+
+    Long getTicketsScanned();
+
+    LocalDateTime getLastSaleAt();
+}
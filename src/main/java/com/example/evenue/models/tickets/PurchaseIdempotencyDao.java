@@ -0,0 +1,24 @@
+package com.example.evenue.models.tickets;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface PurchaseIdempotencyDao extends JpaRepository<PurchaseIdempotencyModel, String> {
+
+    // Record of a key, unless it has expired
+    @Query("SELECT k FROM PurchaseIdempotencyModel k WHERE k.idempotencyKey = :key AND k.expiresAt > :now")
+    Optional<PurchaseIdempotencyModel> findActive(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PurchaseIdempotencyModel k WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
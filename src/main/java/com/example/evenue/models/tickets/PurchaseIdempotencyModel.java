@@ -0,0 +1,115 @@
+package com.example.evenue.models.tickets;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// The tickets a purchase request key produced, so a retried request gets the same tickets back
+@Entity
+@Table(name = "purchase_idempotency_keys", indexes = {
+        @Index(name = "idx_purchase_idempotency_expires_at", columnList = "expires_at")
+})
+public class PurchaseIdempotencyModel {
+
+    @Id
+    @Column(name = "idempotency_key", length = 160)
+    private String idempotencyKey; // Client key, prefixed with the user ID
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "ticket_id", nullable = false)
+    private Long ticketId; // First ticket of the purchase
+
+    @Column(name = "ticket_ids", length = 2000)
+    private String ticketIds; // Every ticket of the purchase, comma-separated in purchase order
+
+    @Column(name = "request_hash", length = 64, nullable = false)
+    private String requestHash; // SHA-256 of the purchase parameters, so a reused key cannot buy something else
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public PurchaseIdempotencyModel() {}
+
+    public PurchaseIdempotencyModel(String idempotencyKey, Integer userId, List<Long> ticketIds, String requestHash,
+                                    LocalDateTime expiresAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.userId = userId;
+        this.ticketId = ticketIds.get(0);
+        this.ticketIds = ticketIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        this.requestHash = requestHash;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public Long getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(Long ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public String getTicketIds() {
+        return ticketIds;
+    }
+
+    public void setTicketIds(String ticketIds) {
+        this.ticketIds = ticketIds;
+    }
+
+    // The purchase's tickets; rows recorded before ticket_ids existed have only the one
+    public List<Long> getTicketIdList() {
+        if (ticketIds == null || ticketIds.isEmpty()) {
+            return List.of(ticketId);
+        }
+        return Arrays.stream(ticketIds.split(",")).map(Long::valueOf).toList();
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
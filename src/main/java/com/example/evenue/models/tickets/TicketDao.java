@@ -5,10 +5,16 @@ package com.example.evenue.models.tickets;
 import com.example.evenue.models.events.EventModel;
 import com.example.evenue.models.tickets.TicketModel;
 import com.example.evenue.models.users.UserModel;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,10 +29,42 @@ public interface TicketDao extends JpaRepository<TicketModel, Long> {
 
     List<TicketModel> findByUserId(int user_id);
 
+    // Page of a user's tickets, newest first, with event, category and ticket type fetched in the same query
+    @Query(value = "SELECT t FROM TicketModel t JOIN FETCH t.event e JOIN FETCH e.eventCategory JOIN FETCH t.ticketType " +
+            "WHERE t.user.id = :userId ORDER BY t.purchaseDate DESC, t.id DESC",
+            countQuery = "SELECT COUNT(t) FROM TicketModel t WHERE t.user.id = :userId")
+    Page<TicketModel> findPageByUserId(@Param("userId") Integer userId, Pageable pageable);
+
 
     @Query("SELECT t FROM TicketModel t WHERE t.event.id = :eventId AND t.ticketType.ticketTypeId = :ticketTypeId")
     List<TicketModel> findByEventIdAndTicketTypeId(@Param("eventId") Long eventId, @Param("ticketTypeId") Long ticketTypeId);
 
+    // Check a ticket in unless it was already scanned; 1 if this scan won, 0 otherwise
+    @Modifying
+    @Transactional
+    @Query("UPDATE TicketModel t SET t.isScanned = true, t.scannedAt = :scannedAt, t.updatedAt = :scannedAt " +
+            "WHERE t.id = :ticketId AND t.ticketCode = :ticketCode AND t.isScanned = false AND t.isValid = true")
+    int checkInById(@Param("ticketId") Long ticketId, @Param("ticketCode") String ticketCode,
+                    @Param("scannedAt") LocalDateTime scannedAt);
+
+    // Same for codes issued before signed codes, optionally restricted to one event
+    @Modifying
+    @Transactional
+    @Query("UPDATE TicketModel t SET t.isScanned = true, t.scannedAt = :scannedAt, t.updatedAt = :scannedAt " +
+            "WHERE t.ticketCode = :ticketCode AND (:eventId IS NULL OR t.event.id = :eventId) " +
+            "AND t.isScanned = false AND t.isValid = true")
+    int checkInByCode(@Param("ticketCode") String ticketCode, @Param("eventId") Long eventId,
+                      @Param("scannedAt") LocalDateTime scannedAt);
+
+    @Query("SELECT t.id AS id, t.event.id AS eventId, t.ticketType.ticketTypeId AS ticketTypeId, " +
+            "t.quantity AS quantity, t.isValid AS isValid, " +
+            "t.isScanned AS isScanned, t.scannedAt AS scannedAt FROM TicketModel t WHERE t.ticketCode = :ticketCode")
+    Optional<TicketScanState> findScanState(@Param("ticketCode") String ticketCode);
+
+    // Code, quantity and scan state of each valid ticket of an event, for the offline scanner manifest
+    @Query("SELECT t.ticketCode, t.quantity, t.isScanned FROM TicketModel t WHERE t.event.id = :eventId AND t.isValid = true")
+    List<Object[]> findManifestRows(@Param("eventId") Long eventId);
+
     // Query to find events a user has tickets for
     @Query("SELECT t.event FROM TicketModel t WHERE t.user = :user")
     List<EventModel> findEventsByUser(@Param("user") UserModel user);
@@ -0,0 +1,50 @@
+package com.example.evenue.models.tickets;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TicketHoldDao extends JpaRepository<TicketHoldModel, Long> {
+
+    // Hold id, quantity and expiry of the hold a user has on a ticket type, including one expired but not yet released
+    @Query("SELECT h.id, h.quantity, h.expiresAt FROM TicketHoldModel h " +
+            "WHERE h.user.id = :userId AND h.ticketType.ticketTypeId = :ticketTypeId")
+    List<Object[]> findHoldKeys(@Param("userId") Integer userId, @Param("ticketTypeId") Long ticketTypeId);
+
+    // Tickets a user holds for an event on ticket types other than the given one
+    @Query("SELECT COALESCE(SUM(h.quantity), 0) FROM TicketHoldModel h WHERE h.user.id = :userId " +
+            "AND h.ticketType.event.id = :eventId AND h.ticketType.ticketTypeId <> :ticketTypeId AND h.expiresAt > :now")
+    long sumActiveHeldForEvent(@Param("userId") Integer userId,
+                               @Param("eventId") Long eventId,
+                               @Param("ticketTypeId") Long ticketTypeId,
+                               @Param("now") LocalDateTime now);
+
+    // Tickets a user holds for an event on any of its ticket types
+    @Query("SELECT COALESCE(SUM(h.quantity), 0) FROM TicketHoldModel h WHERE h.user.id = :userId " +
+            "AND h.ticketType.event.id = :eventId AND h.expiresAt > :now")
+    long sumActiveHeldForUserEvent(@Param("userId") Integer userId,
+                                   @Param("eventId") Long eventId,
+                                   @Param("now") LocalDateTime now);
+
+    // Hold id, ticket type id, event id, quantity and expiry of every hold, soonest expiry first
+    @Query("SELECT h.id, t.ticketTypeId, t.event.id, h.quantity, h.expiresAt " +
+            "FROM TicketHoldModel h JOIN h.ticketType t ORDER BY h.expiresAt")
+    List<Object[]> findAllHoldKeys();
+
+    // Claim a hold for conversion; 0 if it was already released, converted or has expired
+    @Modifying
+    @Query("DELETE FROM TicketHoldModel h WHERE h.id = :holdId AND h.user.id = :userId AND h.expiresAt > :now")
+    int claimHold(@Param("holdId") Long holdId, @Param("userId") Integer userId, @Param("now") LocalDateTime now);
+
+    // Remove a hold being released; 0 if someone else already removed it. The expiry tells the hold
+    // apart from a later one given the same ID, as SQLite reuses the highest row ID once it is deleted
+    @Modifying
+    @Query("DELETE FROM TicketHoldModel h WHERE h.id = :holdId AND h.expiresAt = :expiresAt")
+    int removeHold(@Param("holdId") Long holdId, @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,86 @@
+package com.example.evenue.models.tickets;
+
+import com.example.evenue.models.users.UserModel;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A time-limited reservation of tickets; the row exists only while the hold is active
+@Entity
+@Table(name = "ticket_holds", indexes = {
+        @Index(name = "idx_ticket_holds_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_ticket_holds_user_type", columnList = "user_id, ticket_type_id")
+})
+public class TicketHoldModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "hold_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private UserModel user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ticket_type_id", nullable = false)
+    private TicketTypeModel ticketType;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public UserModel getUser() {
+        return user;
+    }
+
+    public void setUser(UserModel user) {
+        this.user = user;
+    }
+
+    public TicketTypeModel getTicketType() {
+        return ticketType;
+    }
+
+    public void setTicketType(TicketTypeModel ticketType) {
+        this.ticketType = ticketType;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
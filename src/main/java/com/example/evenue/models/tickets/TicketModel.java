@@ -8,7 +8,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "tickets")
+@Table(name = "tickets", indexes = {
+        @Index(name = "idx_tickets_user_purchase_date", columnList = "user_id, purchase_date") // "My tickets" pages
+})
 public class TicketModel {
 
     @Id
@@ -161,7 +163,7 @@ public class TicketModel {
     }
 
     public void generateTicketCode() {
-        this.ticketCode = UUID.randomUUID().toString(); // Generate a unique ticket code
+        this.ticketCode = UUID.randomUUID().toString(); // Provisional unique code, replaced by a signed one once the ticket has an ID
     }
 
     // JPA lifecycle callbacks
@@ -0,0 +1,44 @@
+package com.example.evenue.models.tickets;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TicketSalesDao extends JpaRepository<TicketSalesModel, Long> {
+
+    // Add a sale to the running totals, creating the ticket type's row if it has none
+    @Modifying
+    @Query(value = "INSERT INTO ticket_sales (event_id, ticket_type_id, tickets_sold, revenue, tickets_scanned, last_sale_at) " +
+            "VALUES (:eventId, :ticketTypeId, :quantity, :revenue, 0, :soldAt) ON CONFLICT (event_id, ticket_type_id) " +
+            "DO UPDATE SET tickets_sold = tickets_sold + excluded.tickets_sold, revenue = revenue + excluded.revenue, " +
+            "last_sale_at = excluded.last_sale_at", nativeQuery = true)
+    int addSale(@Param("eventId") Long eventId, @Param("ticketTypeId") Long ticketTypeId,
+                @Param("quantity") int quantity, @Param("revenue") double revenue, @Param("soldAt") LocalDateTime soldAt);
+
+    // Add a check-in to the running totals, creating the ticket type's row if it has none
+    @Modifying
+    @Query(value = "INSERT INTO ticket_sales (event_id, ticket_type_id, tickets_sold, revenue, tickets_scanned) " +
+            "VALUES (:eventId, :ticketTypeId, 0, 0, :quantity) ON CONFLICT (event_id, ticket_type_id) " +
+            "DO UPDATE SET tickets_scanned = tickets_scanned + excluded.tickets_scanned", nativeQuery = true)
+    int addCheckIn(@Param("eventId") Long eventId, @Param("ticketTypeId") Long ticketTypeId, @Param("quantity") int quantity);
+
+    // Create a ticket type's zero totals row unless it already has one
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO ticket_sales (event_id, ticket_type_id, tickets_sold, revenue, tickets_scanned) " +
+            "VALUES (:eventId, :ticketTypeId, 0, 0, 0) ON CONFLICT (event_id, ticket_type_id) DO NOTHING", nativeQuery = true)
+    int createTotals(@Param("eventId") Long eventId, @Param("ticketTypeId") Long ticketTypeId);
+
+    // Totals per event for one organizer's events: reads one row per ticket type, never the tickets
+    @Query("SELECT s.eventId AS eventId, SUM(s.ticketsSold) AS ticketsSold, SUM(s.revenue) AS revenue, " +
+            "SUM(s.ticketsScanned) AS ticketsScanned, MAX(s.lastSaleAt) AS lastSaleAt FROM TicketSalesModel s " +
+            "WHERE s.eventId IN (SELECT e.id FROM EventModel e WHERE e.organizerId = :organizerId) GROUP BY s.eventId")
+    List<EventSalesSummary> findEventSummariesByOrganizer(@Param("organizerId") Integer organizerId);
+}
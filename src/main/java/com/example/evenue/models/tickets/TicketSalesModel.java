@@ -0,0 +1,100 @@
+package com.example.evenue.models.tickets;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Running sales and check-in totals of one ticket type, kept up to date by purchases and scans
+@Entity
+@Table(name = "ticket_sales", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ticket_sales_event_type", columnNames = {"event_id", "ticket_type_id"})
+})
+public class TicketSalesModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "sales_id")
+    private Long id;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "ticket_type_id", nullable = false)
+    private Long ticketTypeId;
+
+    @Column(name = "tickets_sold", nullable = false)
+    private Integer ticketsSold = 0; // Sum of ticket quantities sold
+
+    @Column(name = "revenue", nullable = false)
+    private Double revenue = 0.0;
+
+    @Column(name = "tickets_scanned", nullable = false)
+    private Integer ticketsScanned = 0; // Sum of ticket quantities checked in
+
+    @Column(name = "last_sale_at")
+    private LocalDateTime lastSaleAt;
+
+    public TicketSalesModel() {}
+
+    public TicketSalesModel(Long eventId, Long ticketTypeId) {
+        this.eventId = eventId;
+        this.ticketTypeId = ticketTypeId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public Long getTicketTypeId() {
+        return ticketTypeId;
+    }
+
+    public void setTicketTypeId(Long ticketTypeId) {
+        this.ticketTypeId = ticketTypeId;
+    }
+
+    public Integer getTicketsSold() {
+        return ticketsSold;
+    }
+
+    public void setTicketsSold(Integer ticketsSold) {
+        this.ticketsSold = ticketsSold;
+    }
+
+    public Double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(Double revenue) {
+        this.revenue = revenue;
+    }
+
+    public Integer getTicketsScanned() {
+        return ticketsScanned;
+    }
+
+    public void setTicketsScanned(Integer ticketsScanned) {
+        this.ticketsScanned = ticketsScanned;
+    }
+
+    public LocalDateTime getLastSaleAt() {
+        return lastSaleAt;
+    }
+
+    public void setLastSaleAt(LocalDateTime lastSaleAt) {
+        this.lastSaleAt = lastSaleAt;
+    }
+}
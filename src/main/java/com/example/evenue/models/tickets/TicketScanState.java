@@ -0,0 +1,20 @@
+package com.example.evenue.models.tickets;
+
+import java.time.LocalDateTime;
+
+// Column projection of a ticket's check-in state, read only to explain a refused scan
+public interface TicketScanState {
+    Long getId();
+
+    Long getEventId();
+
+    Long getTicketTypeId();
+
+    Integer getQuantity();
+
+    Boolean getIsValid();
+
+    Boolean getIsScanned();
+
+    LocalDateTime getScannedAt();
+}
@@ -4,6 +4,9 @@ package com.example.evenue.models.tickets;
 
 import com.example.evenue.models.tickets.TicketTypeModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +18,20 @@ public interface TicketTypeDao extends JpaRepository<TicketTypeModel, Long> {
 
     // Find ticket type by event ID and ticket type name
     Optional<TicketTypeModel> findByEventIdAndTypeName(Long eventId, TicketTypeName typeName);
+
+    // Take quantity tickets only if that many remain; returns 0 when there are not enough
+    @Modifying
+    @Query("UPDATE TicketTypeModel t SET t.remainingQuantity = t.remainingQuantity - :quantity " +
+            "WHERE t.ticketTypeId = :ticketTypeId AND t.remainingQuantity >= :quantity")
+    int decrementRemaining(@Param("ticketTypeId") Long ticketTypeId, @Param("quantity") int quantity);
+
+    // Return released tickets to the pool
+    @Modifying
+    @Query("UPDATE TicketTypeModel t SET t.remainingQuantity = t.remainingQuantity + :quantity " +
+            "WHERE t.ticketTypeId = :ticketTypeId")
+    int incrementRemaining(@Param("ticketTypeId") Long ticketTypeId, @Param("quantity") int quantity);
+
+    // Current remaining quantity, read straight from the table
+    @Query("SELECT t.remainingQuantity FROM TicketTypeModel t WHERE t.ticketTypeId = :ticketTypeId")
+    Integer findRemainingQuantity(@Param("ticketTypeId") Long ticketTypeId);
 }
@@ -4,7 +4,9 @@ import com.example.evenue.models.events.EventModel;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "ticket_types")
+@Table(name = "ticket_types", indexes = {
+        @Index(name = "idx_ticket_types_event_price", columnList = "event_id, price") // Browse price filters
+})
 public class TicketTypeModel {
 
     @Id
@@ -0,0 +1,16 @@
+package com.example.evenue.models.userBehaviour;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// One interaction as sent by the browser. clientEventId is generated by the page and stays
+// the same when a beacon is retried, so a resent interaction is only recorded once
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record BehaviourBeacon(String clientEventId, String interactionType, Long eventId, Long eventCategoryId,
+                              String eventLocation, Double timeSpent, @JsonAlias("FriendId") Integer friendId,
+                              Integer ticketQuantity, FilterType filterType) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record FilterType(String date, String price, String location) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.evenue.models.userBehaviour;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A behaviour log segment already loaded into user_behaviour. Written in the same transaction as
+// the segment's rows, so a segment file left behind by a crash is recognised and not loaded twice
+@Entity
+@Table(name = "behaviour_log_segments")
+public class BehaviourLogSegmentModel {
+
+    @Id
+    @Column(name = "segment_id")
+    private Long segmentId;
+
+    @Column(name = "records", nullable = false)
+    private Integer records;
+
+    @Column(name = "compacted_at", nullable = false)
+    private LocalDateTime compactedAt;
+
+    public BehaviourLogSegmentModel() {}
+
+    // Getters and Setters
+    public Long getSegmentId() {
+        return segmentId;
+    }
+
+    public void setSegmentId(Long segmentId) {
+        this.segmentId = segmentId;
+    }
+
+    public Integer getRecords() {
+        return records;
+    }
+
+    public void setRecords(Integer records) {
+        this.records = records;
+    }
+
+    public LocalDateTime getCompactedAt() {
+        return compactedAt;
+    }
+
+    public void setCompactedAt(LocalDateTime compactedAt) {
+        this.compactedAt = compactedAt;
+    }
+}
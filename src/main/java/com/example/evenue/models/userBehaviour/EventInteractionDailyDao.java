@@ -0,0 +1,33 @@
+package com.example.evenue.models.userBehaviour;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface EventInteractionDailyDao extends JpaRepository<EventInteractionDailyModel, Long> {
+
+    // Counts per event and type between two days, inclusive, for the given events
+    @Query("SELECT r.eventId AS id, r.interactionType AS interactionType, SUM(r.interactionCount) AS count " +
+            "FROM EventInteractionDailyModel r WHERE r.eventId IN :eventIds AND r.interactionDate BETWEEN :from AND :to " +
+            "GROUP BY r.eventId, r.interactionType")
+    List<InteractionCount> sumByEvents(@Param("eventIds") List<Long> eventIds,
+                                       @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // One event's counts of one type, day by day
+    List<EventInteractionDailyModel> findByEventIdAndInteractionTypeAndInteractionDateBetweenOrderByInteractionDate(
+            Long eventId, String interactionType, LocalDate from, LocalDate to);
+
+    // Events with the most interactions of one type between two days
+    @Query("SELECT r.eventId AS id, r.interactionType AS interactionType, SUM(r.interactionCount) AS count " +
+            "FROM EventInteractionDailyModel r WHERE r.interactionType = :interactionType AND r.interactionDate BETWEEN :from AND :to " +
+            "GROUP BY r.eventId, r.interactionType ORDER BY SUM(r.interactionCount) DESC, r.eventId")
+    List<InteractionCount> findTop(@Param("interactionType") String interactionType,
+                                   @Param("from") LocalDate from, @Param("to") LocalDate to,
+                                   Pageable pageable);
+}
@@ -0,0 +1,76 @@
+package com.example.evenue.models.userBehaviour;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+// Interactions of one type with one event on one day, added to as behaviour is written
+@Entity
+// Hibernate creates no unique constraints on SQLite; InteractionRollupService creates this one as an index
+@Table(name = "event_interaction_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_event_interaction_daily", columnNames = {"event_id", "interaction_type", "interaction_date"})
+}, indexes = {
+        @Index(name = "idx_event_interaction_daily_date", columnList = "interaction_date, interaction_type")
+})
+public class EventInteractionDailyModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "rollup_id")
+    private Long id;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "interaction_type", nullable = false)
+    private String interactionType;
+
+    @Column(name = "interaction_date", nullable = false)
+    private LocalDate interactionDate;
+
+    @Column(name = "interaction_count", nullable = false)
+    private Long interactionCount = 0L;
+
+    public EventInteractionDailyModel() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getInteractionType() {
+        return interactionType;
+    }
+
+    public void setInteractionType(String interactionType) {
+        this.interactionType = interactionType;
+    }
+
+    public LocalDate getInteractionDate() {
+        return interactionDate;
+    }
+
+    public void setInteractionDate(LocalDate interactionDate) {
+        this.interactionDate = interactionDate;
+    }
+
+    public Long getInteractionCount() {
+        return interactionCount;
+    }
+
+    public void setInteractionCount(Long interactionCount) {
+        this.interactionCount = interactionCount;
+    }
+}
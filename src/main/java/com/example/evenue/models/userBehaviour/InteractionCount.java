@@ -0,0 +1,10 @@
+package com.example.evenue.models.userBehaviour;
+
+// A rolled-up interaction count keyed by an event or category ID and the interaction type
+public interface InteractionCount {
+    Long getId();
+
+    String getInteractionType();
+
+    Long getCount();
+}
@@ -0,0 +1,12 @@
+package com.example.evenue.models.userBehaviour;
+
+import java.time.LocalDateTime;
+
+// One interaction waiting to be written to user_behaviour; references are plain IDs, and the
+// preferred categories are the user's at the time of the interaction
+public record UserBehaviourEvent(Integer userId, Long eventId, String interactionType, LocalDateTime interactionTimestamp,
+                                 String eventLocation, String dateFilter, String priceFilter, String locationFilter,
+                                 Double sessionLength, Integer friendId, Integer ticketId, Long eventCategoryId,
+                                 String userLocation, Long preferredCategory1, Long preferredCategory2,
+                                 Long preferredCategory3) {
+}
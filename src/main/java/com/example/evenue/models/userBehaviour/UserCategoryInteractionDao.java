@@ -0,0 +1,17 @@
+package com.example.evenue.models.userBehaviour;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserCategoryInteractionDao extends JpaRepository<UserCategoryInteractionModel, Long> {
+
+    // A user's counts per category and type, most engaged first
+    @Query("SELECT r.eventCategoryId AS id, r.interactionType AS interactionType, r.interactionCount AS count " +
+            "FROM UserCategoryInteractionModel r WHERE r.userId = :userId ORDER BY r.interactionCount DESC")
+    List<InteractionCount> findByUser(@Param("userId") Integer userId);
+}
@@ -0,0 +1,73 @@
+package com.example.evenue.models.userBehaviour;
+
+import jakarta.persistence.*;
+
+// Interactions of one type by one user with events of one category, added to as behaviour is written
+@Entity
+// Hibernate creates no unique constraints on SQLite; InteractionRollupService creates this one as an index
+@Table(name = "user_category_interactions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_category_interactions",
+                columnNames = {"user_id", "event_category_id", "interaction_type"})
+})
+public class UserCategoryInteractionModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "rollup_id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "event_category_id", nullable = false)
+    private Long eventCategoryId;
+
+    @Column(name = "interaction_type", nullable = false)
+    private String interactionType;
+
+    @Column(name = "interaction_count", nullable = false)
+    private Long interactionCount = 0L;
+
+    public UserCategoryInteractionModel() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public Long getEventCategoryId() {
+        return eventCategoryId;
+    }
+
+    public void setEventCategoryId(Long eventCategoryId) {
+        this.eventCategoryId = eventCategoryId;
+    }
+
+    public String getInteractionType() {
+        return interactionType;
+    }
+
+    public void setInteractionType(String interactionType) {
+        this.interactionType = interactionType;
+    }
+
+    public Long getInteractionCount() {
+        return interactionCount;
+    }
+
+    public void setInteractionCount(Long interactionCount) {
+        this.interactionCount = interactionCount;
+    }
+}
@@ -14,6 +14,10 @@ import java.util.Optional;
 @Repository
 public interface UserDao extends JpaRepository<UserModel, Integer> {
 
+    // IDs of a user's preferred categories, without loading the user or the categories
+    @Query("SELECT c.id FROM UserModel u JOIN u.preferredCategories c WHERE u.id = :userId ORDER BY c.id")
+    List<Long> findPreferredCategoryIds(@Param("userId") Integer userId);
+
     // Custom query to update the user role by user ID
     @Modifying
     @Transactional
@@ -3,6 +3,9 @@ package com.example.evenue.models.wishlist;
 import com.example.evenue.models.events.EventModel;
 import com.example.evenue.models.users.UserModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +15,8 @@ public interface WishlistDao extends JpaRepository<WishlistModel, Long> {
 
     // Find a wishlist item by user and event
     Optional<WishlistModel> findByUserAndEvent(UserModel user, EventModel event);
+
+    // IDs of every event in a user's wishlist, without loading the events themselves
+    @Query("SELECT w.event.id FROM WishlistModel w WHERE w.user.id = :userId")
+    List<Long> findEventIdsByUserId(@Param("userId") Integer userId);
 }
@@ -0,0 +1,41 @@
+package com.example.evenue.service;
+
+import java.util.Collection;
+
+/**
+ * Storage for per-event waiting rooms. The in-process implementation is the default;
+ * a shared store (so several nodes admit from one line) can replace it by providing
+ * another bean and setting evenue.queue.backend. Every operation must be atomic per event.
+ */
+public interface AdmissionQueueBackend {
+
+    enum State { WAITING, ADMITTED, UNKNOWN }
+
+    // Where a token stands; position is the number of people ahead while WAITING
+    record Status(State state, long position) {
+    }
+
+    // Put a token at the back of the line (no-op if it is already waiting or admitted)
+    Status join(Long eventId, String token, long nowMillis);
+
+    // Current status of a token; also records that its holder is still waiting
+    Status status(Long eventId, String token, long nowMillis);
+
+    /**
+     * Admit waiting tokens from the front of the line. Expired admissions and waiters
+     * that stopped polling are dropped first.
+     *
+     * @param maxNew           most tokens to admit in this call
+     * @param maxActive        most admitted tokens allowed at once for the event
+     * @param admissionMillis  how long an admission stays valid
+     * @param abandonMillis    waiters silent for longer than this lose their place
+     * @return the number of tokens admitted
+     */
+    int admit(Long eventId, int maxNew, int maxActive, long admissionMillis, long abandonMillis, long nowMillis);
+
+    // Give up an admission (purchase done), freeing its slot
+    void release(Long eventId, String token);
+
+    // Events that currently have anyone waiting or admitted
+    Collection<Long> activeEvents();
+}
@@ -0,0 +1,144 @@
+package com.example.evenue.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Attendee lists of an event as CSV or NDJSON. Rows come from one joined query
+ * (tickets, users, ticket types) read forward-only with a tuned fetch size, and each
+ * row is written to the output as soon as it is read, so memory use does not grow
+ * with the number of attendees and no entities or lazy proxies are loaded.
+ */
+@Service
+public class AttendeeExportService {
+
+    private static final String ATTENDEES_SQL = "SELECT t.ticket_id, u.first_name, u.last_name, u.email, tt.type_name, " +
+            "t.quantity, t.price, t.purchase_date, t.is_valid, t.is_scanned, t.scanned_at " +
+            "FROM tickets t JOIN users u ON u.id = t.user_id JOIN ticket_types tt ON tt.ticket_type_id = t.ticket_type_id " +
+            "WHERE t.event_id = ? ORDER BY t.ticket_id";
+
+    private static final String[] COLUMNS = {"ticketId", "firstName", "lastName", "email", "ticketType",
+            "quantity", "price", "purchaseDate", "valid", "scanned", "scannedAt"};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public AttendeeExportService(DataSource dataSource,
+                                 @Value("${evenue.export.fetch-size:500}") int fetchSize) {
+        // Own template, so the fetch size only applies to exports
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    // One header line, then one line per ticket
+    public void writeCsv(Long eventId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        try {
+            jdbcTemplate.query(ATTENDEES_SQL, rs -> {
+                try {
+                    for (int column = 1; column <= COLUMNS.length; column++) {
+                        if (column > 1) {
+                            writer.write(',');
+                        }
+                        writer.write(csvField(value(rs, column)));
+                    }
+                    writer.write("\r\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, eventId);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    // One JSON object per line, one line per ticket
+    public void writeNdjson(Long eventId, OutputStream out) throws IOException {
+        try (JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            try {
+                jdbcTemplate.query(ATTENDEES_SQL, rs -> {
+                    try {
+                        json.writeStartObject();
+                        json.writeNumberField("ticketId", rs.getLong(1));
+                        json.writeStringField("firstName", rs.getString(2));
+                        json.writeStringField("lastName", rs.getString(3));
+                        json.writeStringField("email", rs.getString(4));
+                        json.writeStringField("ticketType", rs.getString(5));
+                        json.writeNumberField("quantity", rs.getInt(6));
+                        json.writeNumberField("price", rs.getDouble(7));
+                        json.writeStringField("purchaseDate", value(rs, 8));
+                        json.writeBooleanField("valid", rs.getBoolean(9));
+                        json.writeBooleanField("scanned", rs.getBoolean(10));
+                        json.writeStringField("scannedAt", value(rs, 11));
+                        json.writeEndObject();
+                        json.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, eventId);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // Column value as text; date-times are stored as epoch millis, read back the way Hibernate does
+    private static String value(ResultSet rs, int column) throws SQLException {
+        return switch (column) {
+            case 8, 11 -> {
+                Object stored = rs.getObject(column);
+                if (stored instanceof Number millis) {
+                    yield new Timestamp(millis.longValue()).toLocalDateTime().toString();
+                }
+                yield stored == null ? null : stored.toString();
+            }
+            case 9, 10 -> String.valueOf(rs.getBoolean(column));
+            default -> rs.getString(column);
+        };
+    }
+
+    // Quote when needed, and keep spreadsheet apps from running user-entered text as a formula
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0 && !isNumber(value)) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.userBehaviour.UserBehaviourEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of behaviour events on local disk, split into fixed-size segment files.
+ * The active segment is memory-mapped, so an append is a copy into the mapping under a lock:
+ * no system call and no database. A segment is sealed when it is full or has been open for
+ * longer than the roll interval, and is never written again; sealed segments are read back
+ * in order and deleted once loaded (see BehaviourIngestionService). Segments found on disk
+ * at startup are treated as sealed, which is how a crash's un-loaded events are replayed.
+ *
+ * Segment layout, big-endian: magic "EVBL" and version (4 bytes), then records of payload
+ * length (4), CRC-32 of the payload (4) and the payload. A zero length ends the segment; so
+ * does a record whose length or checksum does not add up, which is a write torn by a crash.
+ */
+public class BehaviourEventLog implements Closeable {
+
+    private static final byte[] MAGIC = {'E', 'V', 'B', 'L'};
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    private long nextSegmentId;
+    private Segment active; // Null until the first append after a seal
+
+    private record Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer, long openedAt) {
+    }
+
+    /**
+     * @param firstSegmentId lowest ID a new segment may have; IDs also stay above any segment on disk
+     */
+    public BehaviourEventLog(Path directory, int segmentBytes, long firstSegmentId) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        long highest = firstSegmentId - 1;
+        for (Path segment : listSegments()) {
+            highest = Math.max(highest, segmentId(segment));
+        }
+        this.nextSegmentId = highest + 1;
+    }
+
+    /**
+     * Append an event to the active segment, sealing it first if the event does not fit.
+     *
+     * @return false if the event is too large for an empty segment
+     */
+    public boolean append(UserBehaviourEvent event) throws IOException {
+        byte[] payload = encode(event);
+        if (HEADER_BYTES + RECORD_HEADER_BYTES + payload.length > segmentBytes) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        synchronized (this) {
+            if (active != null && active.buffer().remaining() < RECORD_HEADER_BYTES + payload.length) {
+                seal();
+            }
+            if (active == null) {
+                active = openSegment(nextSegmentId++);
+            }
+            // Payload and checksum first, length last: a length is only there once its record is
+            MappedByteBuffer buffer = active.buffer();
+            int position = buffer.position();
+            buffer.position(position + RECORD_HEADER_BYTES);
+            buffer.put(payload);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.putInt(position, payload.length);
+        }
+        return true;
+    }
+
+    // Seal the active segment if it has records and was opened at least maxAgeMillis ago
+    public synchronized void roll(long maxAgeMillis) throws IOException {
+        if (active != null && active.buffer().position() > HEADER_BYTES
+                && System.currentTimeMillis() - active.openedAt() >= maxAgeMillis) {
+            seal();
+        }
+    }
+
+    // Write the active segment's dirty pages to disk; the OS does it anyway, this bounds the loss on power failure
+    public synchronized void force() {
+        if (active != null) {
+            active.buffer().force();
+        }
+    }
+
+    // Segments no longer written to, oldest first
+    public List<Path> sealedSegments() throws IOException {
+        // Every segment below the active one is sealed, and any opened after this point has a higher ID
+        long firstUnsealed;
+        synchronized (this) {
+            firstUnsealed = active != null ? active.id() : nextSegmentId;
+        }
+        List<Path> sealed = new ArrayList<>();
+        for (Path segment : listSegments()) {
+            if (segmentId(segment) < firstUnsealed) {
+                sealed.add(segment);
+            }
+        }
+        return sealed;
+    }
+
+    // Lowest ID of a segment file still on disk; no file with a lower ID will ever exist again
+    public long oldestSegmentId() throws IOException {
+        long oldest;
+        synchronized (this) {
+            oldest = nextSegmentId;
+        }
+        for (Path segment : listSegments()) {
+            oldest = Math.min(oldest, segmentId(segment));
+        }
+        return oldest;
+    }
+
+    public void delete(Path segment) throws IOException {
+        Files.deleteIfExists(segment);
+    }
+
+    // Move an unreadable segment out of the way, keeping it for inspection
+    public void quarantine(Path segment) throws IOException {
+        Files.move(segment, segment.resolveSibling(segment.getFileName() + ".corrupt"));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null && active.buffer().position() > HEADER_BYTES) {
+            seal();
+        } else if (active != null) {
+            // Nothing was written; do not leave an empty segment behind
+            active.channel().close();
+            Files.deleteIfExists(active.path());
+            active = null;
+        }
+    }
+
+    public static long segmentId(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    // Read a sealed segment's events, stopping at the end marker or at a torn record
+    public static List<UserBehaviourEvent> read(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        if (buffer.remaining() < HEADER_BYTES) {
+            return List.of();
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        int version = buffer.getInt();
+        if (Arrays.equals(magic, new byte[MAGIC.length]) && version == 0) {
+            return List.of(); // Created, but the process died before the header was written
+        }
+        if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+            throw new IOException("Not a behaviour log segment: " + segment);
+        }
+
+        List<UserBehaviourEvent> events = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                events.add(decode(payload));
+            } catch (BufferUnderflowException e) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return events;
+    }
+
+    private void seal() throws IOException {
+        active.buffer().force();
+        active.channel().close(); // The mapping stays valid until it is garbage collected
+        active = null;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", id, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.put(MAGIC).putInt(VERSION);
+            return new Segment(id, path, channel, buffer, System.currentTimeMillis());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches("\\d+\\" + SUFFIX))
+                    .sorted(Comparator.comparingLong(BehaviourEventLog::segmentId))
+                    .toList();
+        }
+    }
+
+    // Each field is a presence byte followed by the value if present
+    static byte[] encode(UserBehaviourEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeInt(out, event.userId());
+            writeLong(out, event.eventId());
+            writeString(out, event.interactionType());
+            writeTimestamp(out, event.interactionTimestamp());
+            writeString(out, event.eventLocation());
+            writeString(out, event.dateFilter());
+            writeString(out, event.priceFilter());
+            writeString(out, event.locationFilter());
+            writeDouble(out, event.sessionLength());
+            writeInt(out, event.friendId());
+            writeInt(out, event.ticketId());
+            writeLong(out, event.eventCategoryId());
+            writeString(out, event.userLocation());
+            writeLong(out, event.preferredCategory1());
+            writeLong(out, event.preferredCategory2());
+            writeLong(out, event.preferredCategory3());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    static UserBehaviourEvent decode(ByteBuffer in) {
+        return new UserBehaviourEvent(readInt(in), readLong(in), readString(in), readTimestamp(in),
+                readString(in), readString(in), readString(in), readString(in), readDouble(in),
+                readInt(in), readInt(in), readLong(in), readString(in),
+                readLong(in), readLong(in), readLong(in));
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    // Wall-clock time as written, independent of the zone
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Integer readInt(ByteBuffer in) {
+        return in.get() != 0 ? in.getInt() : null;
+    }
+
+    private static Long readLong(ByteBuffer in) {
+        return in.get() != 0 ? in.getLong() : null;
+    }
+
+    private static Double readDouble(ByteBuffer in) {
+        return in.get() != 0 ? in.getDouble() : null;
+    }
+
+    private static String readString(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer in) {
+        return in.get() != 0 ? LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC) : null;
+    }
+}
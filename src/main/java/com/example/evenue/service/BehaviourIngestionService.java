@@ -0,0 +1,417 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.userBehaviour.UserBehaviourEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous, batched writes to user_behaviour. Request threads append the interaction
+ * to a local segmented log (BehaviourEventLog) and return; a compactor loads each sealed
+ * segment into user_behaviour in one transaction, so SQLite sees a few large transactions
+ * instead of one per click and requests never wait on its write lock. Segments left on
+ * disk by a crash are loaded after the restart. Every write also adds its rows to the
+ * interaction rollups (InteractionRollupService) in the same transaction.
+ *
+ * With the log disabled, or if it cannot be written, interactions go on a bounded queue
+ * instead; one writer thread drains it and inserts up to batch-size rows per transaction
+ * with a single JDBC batch. When the queue is full the drop policy decides what is lost:
+ * behaviour data is best-effort, requests are not.
+ */
+@Service
+public class BehaviourIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BehaviourIngestionService.class);
+
+    // What to do with an interaction that arrives while the queue is full
+    public enum DropPolicy {
+        DROP_NEWEST, // Refuse the new interaction
+        DROP_OLDEST, // Make room by discarding the oldest queued interaction
+        BLOCK        // Wait up to offer-timeout-ms for room, then refuse
+    }
+
+    // Unknown events, categories and friends are stored as NULL and unknown users are skipped,
+    // as the entity-based logging did, by sub-selects inside the INSERT rather than lookup queries
+    private static final String INSERT_SQL = "INSERT INTO user_behaviour (user_id, event_id, interaction_type, " +
+            "interaction_timestamp, event_category_id, event_location, date_filter, price_filter, location_filter, " +
+            "session_length, user_location, preferred_category1, preferred_category2, preferred_category3, friend_id, ticket_id) " +
+            "SELECT ?, (SELECT event_id FROM events WHERE event_id = ?), ?, ?, (SELECT id FROM event_categories WHERE id = ?), " +
+            "?, ?, ?, ?, ?, ?, ?, ?, ?, (SELECT id FROM users WHERE id = ?), ? " +
+            "WHERE EXISTS (SELECT 1 FROM users WHERE id = ?)";
+
+    private static final String INSERT_SEGMENT_SQL = "INSERT INTO behaviour_log_segments (segment_id, records, compacted_at) " +
+            "VALUES (?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private InteractionRollupService interactionRollupService;
+
+    private final BlockingQueue<UserBehaviourEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final DropPolicy dropPolicy;
+    private final long offerTimeoutMillis;
+    private final boolean logEnabled;
+    private final Path logDirectory;
+    private final int segmentBytes;
+    private final long rollIntervalMillis;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder segmentsLoaded = new LongAdder();
+
+    private volatile boolean running = true;
+    private Thread writer;
+    private volatile BehaviourEventLog log; // Null when disabled or it could not be opened
+
+    public BehaviourIngestionService(@Value("${evenue.behaviour.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${evenue.behaviour.batch-size:500}") int batchSize,
+                                     @Value("${evenue.behaviour.flush-interval-ms:1000}") long flushIntervalMillis,
+                                     @Value("${evenue.behaviour.drop-policy:DROP_NEWEST}") DropPolicy dropPolicy,
+                                     @Value("${evenue.behaviour.offer-timeout-ms:50}") long offerTimeoutMillis,
+                                     @Value("${evenue.behaviour.log.enabled:true}") boolean logEnabled,
+                                     @Value("${evenue.behaviour.log.dir:behaviour-log}") Path logDirectory,
+                                     @Value("${evenue.behaviour.log.segment-bytes:4194304}") int segmentBytes,
+                                     @Value("${evenue.behaviour.log.roll-interval-ms:5000}") long rollIntervalMillis) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.dropPolicy = dropPolicy;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.logEnabled = logEnabled;
+        this.logDirectory = logDirectory;
+        this.segmentBytes = segmentBytes;
+        this.rollIntervalMillis = rollIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Before the writer starts, so no batch can be counted twice
+        try {
+            transactionTemplate.executeWithoutResult(status -> interactionRollupService.initialize());
+        } catch (RuntimeException e) {
+            logger.error("Could not initialise the interaction rollups", e);
+        }
+
+        writer = new Thread(this::drainLoop, "behaviour-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        if (logEnabled) {
+            try {
+                // Segment IDs never go back to one already loaded, even if the directory was emptied
+                Long lastLoaded = jdbcTemplate.queryForObject(
+                        "SELECT COALESCE(MAX(segment_id), 0) FROM behaviour_log_segments", Long.class);
+                log = new BehaviourEventLog(logDirectory, segmentBytes, lastLoaded + 1);
+                int pending = log.sealedSegments().size();
+                if (pending > 0) {
+                    logger.info("{} behaviour log segments from an earlier run will be loaded", pending);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not open the behaviour log in {}; writing behaviour through the queue",
+                        logDirectory.toAbsolutePath(), e);
+            }
+        }
+    }
+
+    // Write what is still queued or logged before the datasource goes away
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        BehaviourEventLog closing = log;
+        if (closing != null) {
+            try {
+                closing.close();
+            } catch (IOException e) {
+                logger.warn("Could not seal the active behaviour log segment", e);
+            }
+            compactLog(); // Whatever fails to load stays on disk for the next start
+            log = null;
+        }
+    }
+
+    /**
+     * Log or queue an interaction for writing. Never touches the database.
+     *
+     * @return false if the interaction was dropped because the queue is full
+     */
+    public boolean submit(UserBehaviourEvent event) {
+        if (appendToLog(event)) {
+            accepted.increment();
+            return true;
+        }
+        boolean queued = switch (dropPolicy) {
+            case DROP_NEWEST -> queue.offer(event);
+            case DROP_OLDEST -> offerDroppingOldest(event);
+            case BLOCK -> offerWaiting(event);
+        };
+        if (queued) {
+            accepted.increment();
+        } else {
+            dropped.increment();
+        }
+        return queued;
+    }
+
+    // Interactions accepted onto the queue
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    // Interactions lost to a full queue
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // Rows written to user_behaviour
+    public long getWritten() {
+        return written.sum();
+    }
+
+    // Interactions lost because their batch failed to write
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Interactions appended to the behaviour log
+    public long getLogged() {
+        return logged.sum();
+    }
+
+    // Log segments loaded into user_behaviour
+    public long getSegmentsLoaded() {
+        return segmentsLoaded.sum();
+    }
+
+    /**
+     * Load sealed log segments into user_behaviour, oldest first. The active segment is sealed
+     * first once it is roll-interval-ms old, so an interaction is in the table within about
+     * roll-interval-ms plus compaction-interval-ms. A segment that fails to load is retried on
+     * the next run, and later segments wait for it so rows keep their order.
+     */
+    @Scheduled(fixedDelayString = "${evenue.behaviour.log.compaction-interval-ms:5000}",
+            initialDelayString = "${evenue.behaviour.log.compaction-interval-ms:5000}")
+    public synchronized void compactLog() {
+        BehaviourEventLog current = log;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.roll(rollIntervalMillis);
+            current.force();
+            for (Path segment : current.sealedSegments()) {
+                if (!loadSegment(current, segment)) {
+                    break;
+                }
+            }
+            // Markers only matter while their file exists; keep the newest so IDs stay monotonic
+            jdbcTemplate.update("DELETE FROM behaviour_log_segments WHERE segment_id < ? " +
+                            "AND segment_id < (SELECT MAX(segment_id) FROM behaviour_log_segments)",
+                    current.oldestSegmentId());
+        } catch (IOException | DataAccessException e) {
+            logger.warn("Could not compact the behaviour log", e);
+        }
+    }
+
+    // Periodic throughput summary
+    @Scheduled(fixedDelayString = "${evenue.behaviour.stats-log-interval-ms:300000}",
+            initialDelayString = "${evenue.behaviour.stats-log-interval-ms:300000}")
+    public void logStats() {
+        if (getAccepted() + getDropped() > 0) {
+            logger.info("Behaviour ingestion: accepted={}, logged={}, written={}, dropped={}, failed={}, batches={}, " +
+                            "queued={}, segmentsLoaded={}", getAccepted(), getLogged(), getWritten(), getDropped(),
+                    getFailed(), getBatches(), getQueueDepth(), getSegmentsLoaded());
+        }
+    }
+
+    // False if the log is off or failed, in which case the interaction goes to the queue
+    private boolean appendToLog(UserBehaviourEvent event) {
+        BehaviourEventLog current = log;
+        if (current == null) {
+            return false;
+        }
+        try {
+            if (current.append(event)) {
+                logged.increment();
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not append to the behaviour log; queueing the interaction instead", e);
+        }
+        return false;
+    }
+
+    // Load one sealed segment and its marker row in one transaction, then delete the file
+    private boolean loadSegment(BehaviourEventLog current, Path segment) {
+        long segmentId = BehaviourEventLog.segmentId(segment);
+        List<UserBehaviourEvent> events;
+        try {
+            events = BehaviourEventLog.read(segment);
+        } catch (IOException e) {
+            logger.error("Behaviour log segment {} is unreadable and has been set aside", segment, e);
+            try {
+                current.quarantine(segment);
+                return true;
+            } catch (IOException moveFailed) {
+                logger.warn("Could not set aside behaviour log segment {}", segment, moveFailed);
+                return false;
+            }
+        }
+
+        try {
+            Integer inserted = transactionTemplate.execute(status -> {
+                Integer loaded = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM behaviour_log_segments WHERE segment_id = ?", Integer.class, segmentId);
+                if (loaded != null && loaded > 0) {
+                    return null; // Loaded before a crash that left the file behind
+                }
+                int rows = 0;
+                for (int from = 0; from < events.size(); from += batchSize) {
+                    rows += insert(events.subList(from, Math.min(events.size(), from + batchSize)));
+                }
+                jdbcTemplate.update(INSERT_SEGMENT_SQL, segmentId, events.size(), Timestamp.valueOf(LocalDateTime.now()));
+                return rows;
+            });
+            if (inserted != null) {
+                written.add(inserted);
+                segmentsLoaded.increment();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not load behaviour log segment {}; retrying on the next run", segment, e);
+            return false;
+        }
+
+        try {
+            current.delete(segment);
+        } catch (IOException e) {
+            // Its marker row stops it being loaded again
+            logger.warn("Could not delete loaded behaviour log segment {}", segment, e);
+        }
+        return true;
+    }
+
+    private boolean offerDroppingOldest(UserBehaviourEvent event) {
+        while (!queue.offer(event)) {
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerWaiting(UserBehaviourEvent event) {
+        try {
+            return queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Writer thread: a batch is written when it is full or flush-interval-ms after its first interaction
+    private void drainLoop() {
+        List<UserBehaviourEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                UserBehaviourEvent first = running ? queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize && running) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    UserBehaviourEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutting down: fall through and write what was collected, then drain the rest
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+            if (!batch.isEmpty()) {
+                Thread.interrupted(); // A shutdown interrupt must not abort the write itself
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<UserBehaviourEvent> batch) {
+        try {
+            Integer inserted = transactionTemplate.execute(status -> insert(batch));
+            written.add(inserted);
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            logger.warn("Could not write {} behaviour records", batch.size(), e);
+        }
+    }
+
+    // One JDBC batch and its rollups; must run in a transaction. Returns the rows inserted
+    private int insert(List<UserBehaviourEvent> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (UserBehaviourEvent event : batch) {
+            rows.add(new Object[]{
+                    event.userId(), event.eventId(), event.interactionType(),
+                    Timestamp.valueOf(event.interactionTimestamp()), event.eventCategoryId(),
+                    event.eventLocation(), event.dateFilter(), event.priceFilter(), event.locationFilter(),
+                    event.sessionLength(), event.userLocation(),
+                    event.preferredCategory1(), event.preferredCategory2(), event.preferredCategory3(),
+                    event.friendId(), event.ticketId(), event.userId()});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        interactionRollupService.record(batch, counts);
+        int inserted = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                inserted++;
+            }
+        }
+        batches.increment();
+        return inserted;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.tickets.TicketDao;
+import com.example.evenue.models.tickets.TicketScanState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Door check-in. A scan is a single conditional UPDATE (is_scanned = 0 in the WHERE
+ * clause), so when two gates scan the same ticket at once exactly one of them wins.
+ * Signed codes are checked before the UPDATE and need nothing else from the database;
+ * the ticket is only read back to explain a refused scan. A successful scan is added to
+ * the event's sales totals in the same transaction as the UPDATE.
+ */
+@Service
+public class CheckInService {
+
+    public enum Outcome { CHECKED_IN, ALREADY_SCANNED, WRONG_EVENT, INVALID }
+
+    // ticketId/quantity/scannedAt are null when unknown (e.g. a forged code)
+    public record Result(Outcome outcome, Long ticketId, Integer quantity, LocalDateTime scannedAt, String message) {
+    }
+
+    // A scan recorded by a scanner while offline
+    public record Scan(String code, LocalDateTime scannedAt) {
+    }
+
+    @Autowired
+    private TicketDao ticketDao;
+
+    @Autowired
+    private TicketCodeService ticketCodeService;
+
+    @Autowired
+    private TicketSalesService ticketSalesService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Check a ticket in at the door.
+     *
+     * @param eventId the event being scanned for, or null to accept any event
+     */
+    public Result checkIn(String ticketCode, Long eventId) {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(status -> checkIn(ticketCode, eventId, now));
+    }
+
+    /**
+     * Apply scans recorded offline, all in one transaction. Results are in the order of
+     * {@code scans}; a ticket already checked in (online, by another scanner or earlier
+     * in the same batch) comes back as ALREADY_SCANNED with the time of the scan that won.
+     *
+     * @param eventId the event being scanned for, or null to accept any event
+     */
+    public List<Result> checkInBatch(Long eventId, List<Scan> scans) {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(status -> {
+            List<Result> results = new ArrayList<>(scans.size());
+            for (Scan scan : scans) {
+                // Trust the scanner's clock, but never record a scan in the future
+                LocalDateTime scannedAt = scan.scannedAt() == null || scan.scannedAt().isAfter(now) ? now : scan.scannedAt();
+                results.add(checkIn(scan.code(), eventId, scannedAt));
+            }
+            return results;
+        });
+    }
+
+    private Result checkIn(String ticketCode, Long eventId, LocalDateTime scannedAt) {
+        String code = ticketCode == null ? "" : ticketCode.trim();
+
+        if (!ticketCodeService.isSignedFormat(code)) {
+            // Code issued before signed codes
+            if (!code.isEmpty() && ticketDao.checkInByCode(code, eventId, scannedAt) == 1) {
+                TicketScanState state = ticketDao.findScanState(code).orElseThrow();
+                ticketSalesService.recordCheckIn(state.getEventId(), state.getTicketTypeId(), state.getQuantity());
+                return new Result(Outcome.CHECKED_IN, state.getId(), state.getQuantity(), scannedAt, "Ticket checked in.");
+            }
+            return refused(code, eventId);
+        }
+
+        TicketCodeService.Claims claims = ticketCodeService.verify(code);
+        if (claims == null) {
+            return invalid();
+        }
+        if (eventId != null && claims.eventId() != eventId) {
+            return new Result(Outcome.WRONG_EVENT, claims.ticketId(), claims.quantity(), null,
+                    "This ticket is for a different event.");
+        }
+
+        // Signed codes are stored upper case; scanners may send them either way
+        String storedCode = code.toUpperCase(Locale.ROOT);
+        if (ticketDao.checkInById(claims.ticketId(), storedCode, scannedAt) == 1) {
+            ticketSalesService.recordCheckIn(claims.eventId(), claims.ticketTypeId(), claims.quantity());
+            return new Result(Outcome.CHECKED_IN, claims.ticketId(), claims.quantity(), scannedAt, "Ticket checked in.");
+        }
+        return refused(storedCode, eventId);
+    }
+
+    // Work out why the UPDATE matched nothing
+    private Result refused(String code, Long eventId) {
+        Optional<TicketScanState> found = code.isEmpty() ? Optional.empty() : ticketDao.findScanState(code);
+        if (found.isEmpty() || !Boolean.TRUE.equals(found.get().getIsValid())) {
+            return invalid();
+        }
+        TicketScanState state = found.get();
+        if (eventId != null && !eventId.equals(state.getEventId())) {
+            return new Result(Outcome.WRONG_EVENT, state.getId(), state.getQuantity(), null,
+                    "This ticket is for a different event.");
+        }
+        return new Result(Outcome.ALREADY_SCANNED, state.getId(), state.getQuantity(), state.getScannedAt(),
+                "This ticket has already been scanned.");
+    }
+
+    private static Result invalid() {
+        return new Result(Outcome.INVALID, null, null, null, "Ticket not found or invalid ticket code.");
+    }
+}
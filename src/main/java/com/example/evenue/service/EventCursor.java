@@ -0,0 +1,66 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.events.EventModel;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for the event listing order (createdAt DESC, id DESC).
+ * The token is the position of a boundary row, so the next page is a range
+ * seek on (created_at, event_id) instead of an OFFSET scan.
+ */
+public class EventCursor {
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    public EventCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static EventCursor of(EventModel event) {
+        return new EventCursor(event.getCreatedAt(), event.getId());
+    }
+
+    // Encode as a URL-safe token for use in links
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}.
+     *
+     * @param token the cursor token, may be null or blank
+     * @return the cursor, or null if no token was given
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static EventCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new EventCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.events.EventDao;
+import com.example.evenue.models.events.EventModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over event name, location, venue and description.
+ * Search terms are resolved to a set of candidate event IDs so the database
+ * never has to run a LIKE '%...%' scan over the events table. Built at startup
+ * only for the index backend; otherwise on first use, which happens when the fts
+ * backend could not be initialised.
+ */
+@Component
+public class EventSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSearchIndex.class);
+
+    private static final Pattern TOKEN_SPLITTER = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Autowired
+    private EventDao eventDao;
+
+    @Value("${evenue.search.backend:index}")
+    private String searchBackend;
+
+    // Token -> IDs of the events containing it; sorted so prefix lookups are a range scan
+    private final NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+
+    // Event ID -> tokens it was indexed under, used to drop stale postings on re-index
+    private final Map<Long, Set<String>> eventTokens = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Until then index() and remove() have nothing to maintain; guarded by the lock
+    private boolean built;
+
+    // Build the index once the application (and the schema) is ready, if it is the selected backend
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if ("index".equals(searchBackend)) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        build(true);
+    }
+
+    private void build(boolean force) {
+        int events;
+        lock.writeLock().lock();
+        try {
+            if (built && !force) {
+                return; // Built by a concurrent first search
+            }
+            // Read under the lock so an event saved meanwhile is either in the rows or indexed after
+            List<Object[]> rows = eventDao.findSearchableFields();
+            postings.clear();
+            eventTokens.clear();
+            for (Object[] row : rows) {
+                indexTokens((Long) row[0], tokenize((String) row[1], (String) row[2], (String) row[3], (String) row[4]));
+            }
+            built = true;
+            events = rows.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("Event search index built: {} events, {} tokens", events, postings.size());
+    }
+
+    // Add or replace a single event in the index
+    public void index(EventModel event) {
+        if (event == null || event.getId() == null) {
+            return;
+        }
+        Set<String> tokens = tokenize(event.getEventName(), event.getLocation(), event.getVenue(), event.getDescription());
+
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                removeTokens(event.getId());
+                indexTokens(event.getId(), tokens);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove an event from the index
+    public void remove(Long eventId) {
+        lock.writeLock().lock();
+        try {
+            removeTokens(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Resolve a free-text search to the IDs of matching events. Every term in the
+     * query must prefix-match at least one token of the event.
+     *
+     * @param query the raw search text
+     * @return the matching event IDs, empty if nothing matches
+     */
+    public Set<Long> search(String query) {
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptySet();
+        }
+        if (!isBuilt()) {
+            build(false);
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<Long> result = null;
+            for (String term : terms) {
+                Set<Long> matches = new HashSet<>();
+                for (Set<Long> ids : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                    matches.addAll(ids);
+                }
+
+                if (result == null) {
+                    result = matches;
+                } else {
+                    result.retainAll(matches);
+                }
+
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isBuilt() {
+        lock.readLock().lock();
+        try {
+            return built;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexTokens(Long eventId, Set<String> tokens) {
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, t -> new HashSet<>()).add(eventId);
+        }
+        eventTokens.put(eventId, tokens);
+    }
+
+    private void removeTokens(Long eventId) {
+        Set<String> previous = eventTokens.remove(eventId);
+        if (previous == null) {
+            return;
+        }
+        for (String token : previous) {
+            Set<Long> ids = postings.get(token);
+            if (ids != null) {
+                ids.remove(eventId);
+                if (ids.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    static Set<String> tokenize(String... fields) {
+        Set<String> tokens = new HashSet<>();
+        for (String field : fields) {
+            if (field == null) {
+                continue;
+            }
+            for (String token : TOKEN_SPLITTER.split(field.toLowerCase(Locale.ROOT))) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+}
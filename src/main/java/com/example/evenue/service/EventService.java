@@ -1,12 +1,16 @@
 package com.example.evenue.service;
 
+import com.example.evenue.models.events.EventCard;
 import com.example.evenue.models.events.EventDao;
 import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.events.EventOption;
 import com.example.evenue.models.tickets.TicketDao;
 import com.example.evenue.models.tickets.TicketTypeDao;
 import com.example.evenue.models.users.UserModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -15,8 +19,19 @@ import org.springframework.stereotype.Service;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,11 +48,41 @@ public class EventService {
     @Autowired
     private TicketTypeDao ticketTypeDao;
 
+    @Autowired
+    private EventSearchIndex eventSearchIndex;
+
+    @Autowired
+    private FullTextSearchService fullTextSearchService;
+
+    // Search backend: "index" (in-memory inverted index), "fts" (SQLite FTS5) or "like"
+    @Value("${evenue.search.backend:index}")
+    private String searchBackend;
+
+    // Search candidates bound into one IN list; a browse runs its filters over every chunk
+    @Value("${evenue.search.id-chunk-size:500}")
+    private int searchIdChunkSize;
+
     private static final Logger logger = LoggerFactory.getLogger(EventService.class);
 
+    // Placeholder for "ids" when restrictIds is false; an IN list may not be empty
+    private static final List<Long> NO_IDS = Collections.singletonList(-1L);
+
+    // Listing order (createdAt DESC, id DESC); NULL creation times go last, as SQLite sorts them
+    private static final Comparator<EventModel> LISTING_ORDER = Comparator
+            .comparing(EventModel::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(EventModel::getId).reversed();
+
+    private static final long COUNT_CACHE_TTL_MILLIS = 60_000;
+
+    // Browse totals per filter combination, cleared whenever an event is added or its ticket prices change
+    private final Map<String, CachedCount> countCache = new ConcurrentHashMap<>();
+
     // Method to add an event
     public EventModel addEvent(EventModel event) {
-        return eventDao.save(event);
+        EventModel saved = eventDao.save(event);
+        eventSearchIndex.index(saved);
+        countCache.clear();
+        return saved;
     }
 
     public Page<EventModel> getAllEvents(Pageable pageable) {
@@ -56,6 +101,10 @@ public class EventService {
 
     // Implement filter logic with search functionality
     public Page<EventModel> filterEvents(Long categoryId, String search, String location, Pageable pageable) {
+        // FTS results come back in relevance order, which replaces the requested sort
+        if (fullTextSearchService.isEnabled() && search != null && !search.isBlank()) {
+            return pageOfIds(fullTextSearchService.searchEventIds(search, categoryId, location), pageable);
+        }
         if (categoryId != null && categoryId > 0) {
             return eventDao.findByCategoryAndSearch(categoryId, search, pageable);
         }
@@ -74,26 +123,155 @@ public class EventService {
     }
 
     public List<EventModel> searchEvents(String searchQuery, String location) {
+        if (fullTextSearchService.isEnabled() && searchQuery != null && !searchQuery.isBlank()) {
+            return pageOfIds(fullTextSearchService.searchEventIds(searchQuery, null, location), Pageable.unpaged()).getContent();
+        }
         return eventDao.findBySearchAndLocation(searchQuery, location, Pageable.unpaged()).getContent();
     }
 
-    // Method to get all events for dropdown
-    public List<EventModel> getAllEventsForDropdown() {
-        return eventDao.findAllEvents();
+    // Method to get all events for dropdown (id and name only)
+    public List<EventOption> getAllEventsForDropdown() {
+        return eventDao.findAllEventOptions();
+    }
+
+    // Card data for the next upcoming events, soonest first
+    public List<EventCard> getUpcomingEventCards(int limit) {
+        return eventDao.findUpcomingEventCards(LocalDate.now(), PageRequest.of(0, limit));
+    }
+
+    // One page of the upcoming events a user holds tickets for, soonest first
+    public Page<EventModel> getUpcomingEventsForTicketHolder(Integer userId, Pageable pageable) {
+        return eventDao.findUpcomingByTicketHolder(userId, LocalDate.now(), pageable);
+    }
+
+    /**
+     * One page of the events matching the browse filters (categories, date, price, search
+     * text, location), newest first. Walks (createdAt DESC, id DESC) from an opaque cursor
+     * instead of an offset, so deep pages cost the same as the first one and no COUNT
+     * query is issued.
+     *
+     * @param afterCursor  cursor of the last row already shown, to page forward
+     * @param beforeCursor cursor of the first row already shown, to page back
+     * @param size         number of events per page
+     * @return the events on this page and the cursors around it
+     */
+    public EventSlice browseEvents(List<Long> categories, String dateFilter, String priceFilter,
+                                   String searchQuery, String location,
+                                   String afterCursor, String beforeCursor, int size) {
+        BrowseFilter filter = resolveBrowseFilter(categories, dateFilter, priceFilter, searchQuery, location);
+        if (filter.noMatches) {
+            return new EventSlice(Collections.emptyList(), null, null);
+        }
+
+        EventCursor after = EventCursor.decode(afterCursor);
+        EventCursor before = EventCursor.decode(beforeCursor);
+        Pageable limit = PageRequest.ofSize(size + 1); // One extra row tells us whether another page exists
+
+        if (before != null) {
+            List<EventModel> rows = findKeyset(filter, LISTING_ORDER.reversed(), size + 1,
+                    ids -> eventDao.findKeysetBefore(filter.restrictIds, ids, filter.categories,
+                            filter.search, filter.startDate, filter.endDate, filter.minPrice, filter.maxPrice,
+                            filter.location, before.getCreatedAt(), before.getId(), limit));
+
+            // Reached the start of the list: show a full first page instead of a short one
+            if (rows.size() <= size) {
+                return browseEvents(categories, dateFilter, priceFilter, searchQuery, location, null, null, size);
+            }
+
+            List<EventModel> page = new ArrayList<>(rows.subList(0, size));
+            Collections.reverse(page);
+            return new EventSlice(page,
+                    EventCursor.of(page.get(page.size() - 1)).encode(),
+                    EventCursor.of(page.get(0)).encode());
+        }
+
+        List<EventModel> rows = findKeyset(filter, LISTING_ORDER, size + 1,
+                ids -> eventDao.findKeysetAfter(filter.restrictIds, ids, filter.categories,
+                        filter.search, filter.startDate, filter.endDate, filter.minPrice, filter.maxPrice,
+                        filter.location, after != null ? after.getCreatedAt() : null, after != null ? after.getId() : null,
+                        limit));
+
+        boolean hasMore = rows.size() > size;
+        List<EventModel> page = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = hasMore ? EventCursor.of(page.get(page.size() - 1)).encode() : null;
+        String previousCursor = after != null && !page.isEmpty() ? EventCursor.of(page.get(0)).encode() : null;
+        return new EventSlice(page, nextCursor, previousCursor);
+    }
+
+    // Keyset version of getAllEvents: latest events first, no filters
+    public EventSlice getAllEvents(String afterCursor, String beforeCursor, int size) {
+        return browseEvents(null, null, null, null, null, afterCursor, beforeCursor, size);
+    }
+
+    /**
+     * Total number of events matching the browse filters. Counts are cached per filter
+     * combination for a short time since the exact figure is informational only.
+     */
+    public long countEvents(List<Long> categories, String dateFilter, String priceFilter,
+                            String searchQuery, String location) {
+        BrowseFilter filter = resolveBrowseFilter(categories, dateFilter, priceFilter, searchQuery, location);
+        if (filter.noMatches) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        CachedCount cached = countCache.get(filter.cacheKey);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.value;
+        }
+
+        // Every search candidate is counted: the chunks together cover the whole candidate set
+        long count = 0;
+        for (Collection<Long> ids : idChunks(filter)) {
+            count += eventDao.countByKeysetFilters(filter.restrictIds, ids, filter.categories,
+                    filter.search, filter.startDate, filter.endDate, filter.minPrice, filter.maxPrice, filter.location);
+        }
+        countCache.put(filter.cacheKey, new CachedCount(count, now + COUNT_CACHE_TTL_MILLIS));
+        return count;
+    }
+
+    // Forget cached browse totals, e.g. after a ticket type change moved an event's price range
+    public void invalidateCounts() {
+        countCache.clear();
     }
 
-    public Page<EventModel> getFilteredEvents(
-            List<Long> categories,
-            String dateFilter,
-            String priceFilter,
-            String searchQuery,
-            String location,
-            Pageable pageable) {
+    // Normalise browse parameters and resolve the search text to candidate IDs
+    private BrowseFilter resolveBrowseFilter(List<Long> categories, String dateFilter, String priceFilter,
+                                             String searchQuery, String location) {
+        BrowseFilter filter = new BrowseFilter();
+        filter.categories = (categories != null && !categories.isEmpty()) ? categories : null;
+        filter.location = (location != null && !location.isBlank()) ? location : null;
+
+        LocalDate[] dateRange = resolveDateRange(dateFilter);
+        filter.startDate = dateRange[0];
+        filter.endDate = dateRange[1];
 
-        // Normalize categories list
-        categories = (categories != null && categories.isEmpty()) ? null : categories;
+        Double[] priceRange = resolvePriceRange(priceFilter);
+        filter.minPrice = priceRange[0];
+        filter.maxPrice = priceRange[1];
 
-        // Date filter logic
+        String search = (searchQuery != null && !searchQuery.isBlank()) ? searchQuery.trim() : null;
+        if (search != null && !"like".equals(searchBackend)) {
+            // Every text match is a candidate; the other filters then run over all of them in ID chunks
+            List<Long> candidateIds = new ArrayList<>(fullTextSearchService.isEnabled()
+                    ? new LinkedHashSet<>(fullTextSearchService.searchEventIds(search, null, null))
+                    : eventSearchIndex.search(search));
+            filter.restrictIds = true;
+            filter.ids = candidateIds;
+            filter.noMatches = candidateIds.isEmpty();
+        } else {
+            filter.search = search;
+        }
+
+        filter.cacheKey = String.join("|",
+                String.valueOf(filter.categories == null ? null : new TreeSet<>(filter.categories)),
+                String.valueOf(dateFilter), String.valueOf(priceFilter),
+                String.valueOf(search == null ? null : search.toLowerCase()),
+                String.valueOf(filter.location == null ? null : filter.location.toLowerCase()));
+        return filter;
+    }
+
+    private static LocalDate[] resolveDateRange(String dateFilter) {
         LocalDate startDate = null;
         LocalDate endDate = null;
         if (dateFilter != null) {
@@ -122,8 +300,10 @@ public class EventService {
                     break;
             }
         }
+        return new LocalDate[]{startDate, endDate};
+    }
 
-        // Price filter logic
+    private static Double[] resolvePriceRange(String priceFilter) {
         Double minPrice = null;
         Double maxPrice = null;
         if (priceFilter != null) {
@@ -146,23 +326,82 @@ public class EventService {
                     break;
             }
         }
+        return new Double[]{minPrice, maxPrice};
+    }
 
-        // Log the calculated filter values (if logging is needed)
-//    logger.info("Categories: {}", categories);
-//    logger.info("Date range: {} to {}", startDate, endDate);
-//    logger.info("Price range: {} to {}", minPrice, maxPrice);
-//    logger.info("Search Query: {}", searchQuery);
-//    logger.info("Location: {}", location);
-        // Fetch events using DAO method with all filters applied
-        return eventDao.findByFilters(
-                categories,
-                searchQuery,
-                startDate,
-                endDate,
-                minPrice,
-                maxPrice,
-                location,
-                pageable);
+    /**
+     * Run a keyset query over the whole candidate set. Without search candidates this is the
+     * query itself; with them it runs once per ID chunk, each chunk returning its own first
+     * rows, and the first {@code limit} rows of their union in {@code order} are the page.
+     */
+    private List<EventModel> findKeyset(BrowseFilter filter, Comparator<EventModel> order, int limit,
+                                        Function<Collection<Long>, List<EventModel>> query) {
+        List<List<Long>> chunks = idChunks(filter);
+        if (chunks.size() == 1) {
+            return query.apply(chunks.get(0));
+        }
+        List<EventModel> rows = new ArrayList<>();
+        for (List<Long> ids : chunks) {
+            rows.addAll(query.apply(ids));
+        }
+        rows.sort(order);
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+
+    // Search candidates in IN lists of at most searchIdChunkSize, well inside SQLite's bound-parameter limit
+    private List<List<Long>> idChunks(BrowseFilter filter) {
+        if (!filter.restrictIds) {
+            return List.of(filter.ids);
+        }
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < filter.ids.size(); from += searchIdChunkSize) {
+            chunks.add(filter.ids.subList(from, Math.min(filter.ids.size(), from + searchIdChunkSize)));
+        }
+        return chunks;
+    }
+
+    // Load one page of events from an ordered ID list, keeping the list order
+    private Page<EventModel> pageOfIds(List<Long> orderedIds, Pageable pageable) {
+        List<Long> pageIds = orderedIds;
+        if (pageable.isPaged()) {
+            int from = (int) Math.min(pageable.getOffset(), orderedIds.size());
+            int to = Math.min(from + pageable.getPageSize(), orderedIds.size());
+            pageIds = orderedIds.subList(from, to);
+        }
+
+        Map<Long, EventModel> byId = eventDao.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(EventModel::getId, Function.identity()));
+        List<EventModel> content = pageIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageable, orderedIds.size());
+    }
+
+    // Normalised browse filters shared by the keyset and count queries
+    private static class BrowseFilter {
+        boolean restrictIds;
+        List<Long> ids = NO_IDS;
+        boolean noMatches;
+        List<Long> categories;
+        String search;
+        String location;
+        LocalDate startDate;
+        LocalDate endDate;
+        Double minPrice;
+        Double maxPrice;
+        String cacheKey;
+    }
+
+    private static class CachedCount {
+        final long value;
+        final long expiresAt;
+
+        CachedCount(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
     }
 
 }
@@ -0,0 +1,44 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.events.EventModel;
+
+import java.util.List;
+
+/**
+ * One keyset page of events plus the cursors needed to move forward and back.
+ * Unlike a Page it carries no total, so fetching it never runs a COUNT query.
+ */
+public class EventSlice {
+
+    private final List<EventModel> events;
+    private final String nextCursor;
+    private final String previousCursor;
+
+    public EventSlice(List<EventModel> events, String nextCursor, String previousCursor) {
+        this.events = events;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    public List<EventModel> getEvents() {
+        return events;
+    }
+
+    // Cursor for the page after this one, null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    // Cursor for the page before this one, null on the first page
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+}
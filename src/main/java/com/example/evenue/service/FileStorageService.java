@@ -1,50 +1,284 @@
 package com.example.evenue.service;
 
+import com.example.evenue.utils.UnsupportedImageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
 @Service
 public class FileStorageService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+
+    public static final String MEDIA_URL_PREFIX = "/media/";
+
+    private static final long MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+
+    // Accepted upload formats by ImageIO format name. The type is detected from the bytes, never taken
+    // from the client, since /media is served from the site's own origin
+    private static final Map<String, String> IMAGE_TYPES = Map.of(
+            "png", "image/png",
+            "jpeg", "image/jpeg",
+            "gif", "image/gif",
+            "webp", "image/webp");
+
+    public static final Set<String> IMAGE_CONTENT_TYPES = Set.copyOf(IMAGE_TYPES.values());
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    // How long a request waits for a rendition before falling back to the original
+    private static final long VARIANT_WAIT_SECONDS = 10;
+
+    // Root of the content-addressed store; blobs live at <root>/<first two hex chars>/<sha256>
+    @Value("${evenue.media.dir:media}")
+    private Path mediaRoot;
+
+    @Autowired
+    private ImageVariantGenerator variantGenerator;
+
     /**
-     * This method handles the file upload and converts the image to a base64-encoded string,
-     * which is returned to be stored or displayed as needed.
+     * Store an uploaded image in the content-addressed media store.
      *
      * @param file the uploaded image file
-     * @return the base64-encoded image string with the proper data URI prefix, or null if there's an error
+     * @return the URL the image is served from (/media/{sha256}), or null if no file was provided
      */
-    public String convertToBase64AndStore(MultipartFile file) {
+    public String storeImage(MultipartFile file) {
         try {
             // Check if the file is provided and is not empty
-            if (file != null && !file.isEmpty()) {
+            if (file == null || file.isEmpty()) {
+                return null;
+            }
 
-                // Check file size (optional: max 5MB)
-                if (file.getSize() > 5 * 1024 * 1024) {
-                    throw new IOException("File size exceeds 5MB limit.");
+            // Check file size (optional: max 5MB)
+            if (file.getSize() > MAX_IMAGE_BYTES) {
+                throw new IOException("File size exceeds 5MB limit.");
+            }
+
+            String hash;
+            try (InputStream in = file.getInputStream()) {
+                hash = store(in);
+            }
+
+            // Pre-generate the smaller renditions in the background
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (variant != ImageVariant.ORIGINAL) {
+                    variantGenerator.generate(blobPath(hash), variantPath(hash, variant), variantTypePath(hash, variant),
+                            variant.getWidth());
                 }
+            }
+            return MEDIA_URL_PREFIX + hash;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store image", e);
+        }
+    }
+
+    /**
+     * Move an inline "data:" URI image into the media store. Values that are not
+     * data URIs (already a reference, or null) are returned unchanged. The declared
+     * type is ignored; the content must be a supported image.
+     *
+     * @param dataUri the stored image value
+     * @return the media URL for the image
+     * @throws UnsupportedImageException if the content is not a PNG, JPEG, GIF or WebP image
+     */
+    public String storeDataUri(String dataUri) throws IOException {
+        if (dataUri == null || !dataUri.startsWith("data:")) {
+            return dataUri;
+        }
+        int comma = dataUri.indexOf(',');
+        int semicolon = dataUri.indexOf(';');
+        if (comma < 0 || semicolon < 0 || semicolon > comma) {
+            throw new IOException("Unsupported data URI");
+        }
+        byte[] bytes = Base64.getDecoder().decode(dataUri.substring(comma + 1));
+        return MEDIA_URL_PREFIX + store(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Write an image to the store under its SHA-256. Identical content is stored once.
+     *
+     * @return the hex SHA-256 of the content
+     * @throws UnsupportedImageException if the content is not a PNG, JPEG, GIF or WebP image
+     */
+    public String store(InputStream content) throws IOException {
+        Files.createDirectories(mediaRoot);
+        Path temp = Files.createTempFile(mediaRoot, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (DigestInputStream in = new DigestInputStream(content, digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            String contentType = detectImageType(temp);
+            if (contentType == null) {
+                throw new UnsupportedImageException("Only PNG, JPEG, GIF and WebP images can be uploaded.");
+            }
+
+            Path target = blobPath(hash);
+            Files.createDirectories(target.getParent());
+            // Rewritten even if the blob exists, so a type recorded from a client header is replaced
+            Files.writeString(typePath(hash), contentType, StandardCharsets.UTF_8);
+            if (!Files.exists(target)) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Location of a stored blob, or null if the hash is malformed or unknown
+    public Path resolve(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return null;
+        }
+        Path blob = blobPath(hash);
+        return Files.isRegularFile(blob) ? blob : null;
+    }
+
+    /**
+     * Locate a rendition of a stored blob, generating it on first request. Falls back
+     * to the original when no smaller rendition applies or it cannot be produced in time.
+     *
+     * @return the rendition, the original, or null if the hash is malformed or unknown
+     */
+    public Path resolve(String hash, ImageVariant variant) {
+        Path original = resolve(hash);
+        if (original == null || variant == ImageVariant.ORIGINAL) {
+            return original;
+        }
+        try {
+            boolean created = variantGenerator.generate(original, variantPath(hash, variant),
+                    variantTypePath(hash, variant), variant.getWidth()).get(VARIANT_WAIT_SECONDS, TimeUnit.SECONDS);
+            return created ? variantPath(hash, variant) : original;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return original;
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Serving original for {} {}: rendition not ready", hash, variant.key());
+            return original;
+        }
+    }
+
+    // Content type recorded when the blob was stored
+    public String contentType(String hash) {
+        return readType(typePath(hash));
+    }
 
-                // Get the file bytes
-                byte[] fileBytes = file.getBytes();
+    // Content type of a file returned by resolve(hash, variant)
+    public String contentType(String hash, Path resolved) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (variant != ImageVariant.ORIGINAL && resolved.equals(variantPath(hash, variant))) {
+                return readType(variantTypePath(hash, variant));
+            }
+        }
+        return contentType(hash);
+    }
 
-                // Convert the file bytes to a Base64-encoded string
-                String base64EncodedImage = Base64.getEncoder().encodeToString(fileBytes);
+    /**
+     * URL of the given rendition of a stored image, for use in templates as
+     * {@code ${@fileStorageService.variantUrl(event.eventImage, 'card')}}. Values that
+     * are not media store references (external URLs, inline data) are returned unchanged.
+     */
+    public String variantUrl(String imageUrl, String variant) {
+        if (imageUrl == null || !imageUrl.startsWith(MEDIA_URL_PREFIX)
+                || !HASH_PATTERN.matcher(imageUrl.substring(MEDIA_URL_PREFIX.length())).matches()) {
+            return imageUrl;
+        }
+        ImageVariant resolved = ImageVariant.fromKey(variant);
+        if (resolved == null || resolved == ImageVariant.ORIGINAL) {
+            return imageUrl;
+        }
+        return imageUrl + "/" + resolved.key();
+    }
 
-                // Construct the Base64 image string with the data URI prefix
-                // Example: "data:image/jpeg;base64,{base64EncodedImage}"
-                String base64WithPrefix = "data:" + file.getContentType() + ";base64," + base64EncodedImage;
+    // Whether content of this type may be served inline; anything else is sent as a download
+    public static boolean isImageType(String contentType) {
+        return contentType != null && IMAGE_CONTENT_TYPES.contains(contentType);
+    }
 
-                // Return the base64 encoded string with the data URI prefix
-                return base64WithPrefix;
-            } else {
-                return null; // Return null if the file is empty or not provided
+    // Content type of a supported image from its bytes, or null if it is anything else
+    private static String detectImageType(Path file) throws IOException {
+        // ImageIO has no WebP reader, so WebP is recognised by its RIFF header
+        byte[] header = new byte[12];
+        try (InputStream in = Files.newInputStream(file)) {
+            if (in.readNBytes(header, 0, header.length) == header.length
+                    && new String(header, 0, 4, StandardCharsets.US_ASCII).equals("RIFF")
+                    && new String(header, 8, 4, StandardCharsets.US_ASCII).equals("WEBP")) {
+                return IMAGE_TYPES.get("webp");
             }
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                return IMAGE_TYPES.get(format.equals("jpg") ? "jpeg" : format);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
 
+    private String readType(Path typeFile) {
+        try {
+            return Files.readString(typeFile, StandardCharsets.UTF_8).trim();
         } catch (IOException e) {
-            throw new RuntimeException("Failed to convert file to base64", e);
+            logger.warn("No content type recorded at {}", typeFile.getFileName());
+            return "application/octet-stream";
         }
     }
-}
 
+    private Path blobPath(String hash) {
+        return mediaRoot.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path typePath(String hash) {
+        return mediaRoot.resolve(hash.substring(0, 2)).resolve(hash + ".type");
+    }
+
+    private Path variantPath(String hash, ImageVariant variant) {
+        return mediaRoot.resolve(hash.substring(0, 2)).resolve(hash + "-" + variant.key());
+    }
+
+    private Path variantTypePath(String hash, ImageVariant variant) {
+        return mediaRoot.resolve(hash.substring(0, 2)).resolve(hash + "-" + variant.key() + ".type");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.evenue.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * SQLite FTS5 search over events and posts. The virtual tables are external-content
+ * tables mirroring {@code events} and {@code posts}; triggers keep them in sync so
+ * the JPA write path does not need to know about them.
+ */
+@Service
+public class FullTextSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FullTextSearchService.class);
+
+    private static final List<String> EVENT_FTS_DDL = List.of(
+            "CREATE VIRTUAL TABLE events_fts USING fts5(event_name, description, location, venue, " +
+                    "content='events', content_rowid='event_id')",
+            "CREATE TRIGGER IF NOT EXISTS events_fts_ai AFTER INSERT ON events BEGIN " +
+                    "INSERT INTO events_fts(rowid, event_name, description, location, venue) " +
+                    "VALUES (new.event_id, new.event_name, new.description, new.location, new.venue); END",
+            "CREATE TRIGGER IF NOT EXISTS events_fts_ad AFTER DELETE ON events BEGIN " +
+                    "INSERT INTO events_fts(events_fts, rowid, event_name, description, location, venue) " +
+                    "VALUES ('delete', old.event_id, old.event_name, old.description, old.location, old.venue); END",
+            "CREATE TRIGGER IF NOT EXISTS events_fts_au AFTER UPDATE OF event_name, description, location, venue ON events BEGIN " +
+                    "INSERT INTO events_fts(events_fts, rowid, event_name, description, location, venue) " +
+                    "VALUES ('delete', old.event_id, old.event_name, old.description, old.location, old.venue); " +
+                    "INSERT INTO events_fts(rowid, event_name, description, location, venue) " +
+                    "VALUES (new.event_id, new.event_name, new.description, new.location, new.venue); END",
+            "INSERT INTO events_fts(events_fts) VALUES ('rebuild')"
+    );
+
+    private static final List<String> POST_FTS_DDL = List.of(
+            "CREATE VIRTUAL TABLE posts_fts USING fts5(title, content, content='posts', content_rowid='id')",
+            "CREATE TRIGGER IF NOT EXISTS posts_fts_ai AFTER INSERT ON posts BEGIN " +
+                    "INSERT INTO posts_fts(rowid, title, content) VALUES (new.id, new.title, new.content); END",
+            "CREATE TRIGGER IF NOT EXISTS posts_fts_ad AFTER DELETE ON posts BEGIN " +
+                    "INSERT INTO posts_fts(posts_fts, rowid, title, content) VALUES ('delete', old.id, old.title, old.content); END",
+            "CREATE TRIGGER IF NOT EXISTS posts_fts_au AFTER UPDATE OF title, content ON posts BEGIN " +
+                    "INSERT INTO posts_fts(posts_fts, rowid, title, content) VALUES ('delete', old.id, old.title, old.content); " +
+                    "INSERT INTO posts_fts(rowid, title, content) VALUES (new.id, new.title, new.content); END",
+            "INSERT INTO posts_fts(posts_fts) VALUES ('rebuild')"
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${evenue.search.backend:index}")
+    private String searchBackend;
+
+    private volatile boolean available;
+
+    // Create the FTS tables and triggers on first start when the fts backend is selected
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!"fts".equals(searchBackend)) {
+            return;
+        }
+        try {
+            createIfMissing("events_fts", EVENT_FTS_DDL);
+            createIfMissing("posts_fts", POST_FTS_DDL);
+            available = true;
+            logger.info("SQLite FTS5 search backend ready");
+        } catch (Exception e) {
+            logger.error("Could not initialise SQLite FTS5 search, falling back to the default backend", e);
+        }
+    }
+
+    // True when the fts backend is selected and its tables exist
+    public boolean isEnabled() {
+        return available;
+    }
+
+    /**
+     * Find events matching the search text, best match first (bm25 ranking).
+     *
+     * @param query      the raw search text
+     * @param categoryId optional category restriction
+     * @param location   optional location substring restriction
+     * @return the matching event IDs in relevance order
+     */
+    public List<Long> searchEventIds(String query, Long categoryId, String location) {
+        String match = toMatchExpression(query);
+        if (match == null) {
+            return Collections.emptyList();
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT e.event_id FROM events_fts JOIN events e ON e.event_id = events_fts.rowid " +
+                        "WHERE events_fts MATCH ?");
+        List<Object> args = new ArrayList<>();
+        args.add(match);
+
+        if (categoryId != null && categoryId > 0) {
+            sql.append(" AND e.category_id = ?");
+            args.add(categoryId);
+        }
+        if (location != null && !location.isBlank()) {
+            sql.append(" AND LOWER(e.location) LIKE ?");
+            args.add("%" + location.toLowerCase() + "%");
+        }
+        sql.append(" ORDER BY bm25(events_fts)");
+
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    /**
+     * Find posts matching the search text in title or content, best match first.
+     *
+     * @param query the raw search text
+     * @return the matching post IDs in relevance order
+     */
+    public List<Long> searchPostIds(String query) {
+        String match = toMatchExpression(query);
+        if (match == null) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT rowid FROM posts_fts WHERE posts_fts MATCH ? ORDER BY bm25(posts_fts)",
+                Long.class, match);
+    }
+
+    private void createIfMissing(String table, List<String> ddl) {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?", Integer.class, table);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        for (String statement : ddl) {
+            jdbcTemplate.execute(statement);
+        }
+        logger.info("Created and populated FTS table {}", table);
+    }
+
+    // Turn free text into a safe MATCH expression: every term quoted and prefix-matched
+    private static String toMatchExpression(String query) {
+        Set<String> terms = EventSearchIndex.tokenize(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return terms.stream()
+                .map(term -> "\"" + term + "\"*")
+                .collect(Collectors.joining(" "));
+    }
+}
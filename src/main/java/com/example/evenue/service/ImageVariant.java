@@ -0,0 +1,37 @@
+package com.example.evenue.service;
+
+import java.util.Locale;
+
+/**
+ * Fixed-width renditions of an uploaded image. ORIGINAL is the stored upload itself.
+ */
+public enum ImageVariant {
+    CARD(480),     // Browse cards, carousels, lists
+    DETAIL(1200),  // Event and post detail pages
+    ORIGINAL(0);
+
+    private final int width;
+
+    ImageVariant(int width) {
+        this.width = width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // Lower-case name used in /media/{hash}/{variant} URLs
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    // Parse a URL variant name, null if it is not a known variant
+    public static ImageVariant fromKey(String key) {
+        for (ImageVariant variant : values()) {
+            if (variant.key().equals(key)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
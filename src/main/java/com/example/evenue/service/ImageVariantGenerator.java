@@ -0,0 +1,203 @@
+package com.example.evenue.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Produces downscaled renditions of stored images with javax.imageio on a small,
+ * bounded worker pool so resizing never runs on (or floods) request threads.
+ * Concurrent requests for the same rendition share one job, and an image that gets no
+ * rendition is marked so later requests serve the original without queueing a job.
+ */
+@Component
+public class ImageVariantGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantGenerator.class);
+
+    private static final String NO_VARIANT_SUFFIX = ".none";
+
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+
+    // Target file -> job currently producing it
+    private final ConcurrentMap<Path, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageVariantGenerator(@Value("${evenue.media.variant-threads:2}") int threads,
+                                 @Value("${evenue.media.variant-queue:64}") int queueSize,
+                                 @Value("${evenue.media.variant-max-pixels:40000000}") long maxPixels) {
+        this.maxPixels = maxPixels;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Resize {@code source} to {@code width} pixels wide and write it to {@code target},
+     * recording its content type in {@code typeFile}.
+     *
+     * @return a future completing with true when the rendition exists, or false when the
+     *         original should be served instead (already narrow enough, too large or not
+     *         a decodable image, or the pool is saturated)
+     */
+    public CompletableFuture<Boolean> generate(Path source, Path target, Path typeFile, int width) {
+        if (Files.exists(target)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (Files.exists(noVariantPath(target))) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CompletableFuture<Boolean> job = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(target, job);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    boolean created = resize(source, target, typeFile, width);
+                    if (!created) {
+                        markNoVariant(target);
+                    }
+                    job.complete(created);
+                } catch (Exception e) {
+                    logger.warn("Could not create {} px rendition of {}", width, source.getFileName(), e);
+                    markNoVariant(target);
+                    job.complete(false);
+                } finally {
+                    inFlight.remove(target, job);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Saturated: serve the original now, the rendition is retried on a later request
+            inFlight.remove(target, job);
+            job.complete(false);
+        }
+        return job;
+    }
+
+    private boolean resize(Path source, Path target, Path typeFile, int width) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Header-only read: no need to decode images that are already small enough
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if (sourceWidth <= width) {
+                    return false;
+                }
+                if ((long) sourceWidth * sourceHeight > maxPixels) {
+                    logger.warn("Not creating a rendition of {}: {}x{} px is over the {} px limit",
+                            source.getFileName(), sourceWidth, sourceHeight, maxPixels);
+                    return false;
+                }
+
+                // Decode every n-th pixel, still at least twice the target width so the downscale has detail to work with
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, sourceWidth / (width * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage original = reader.read(0, param);
+                boolean alpha = original.getColorModel().hasAlpha();
+                String format = alpha || reader.getFormatName().equalsIgnoreCase("gif") ? "png" : reader.getFormatName();
+                Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+                if (!writers.hasNext()) {
+                    format = "png";
+                    writers = ImageIO.getImageWritersByFormatName(format);
+                }
+                ImageWriter writer = writers.next();
+
+                int height = Math.max(1, Math.min(original.getHeight(),
+                        (int) Math.round(sourceHeight * (width / (double) sourceWidth))));
+                BufferedImage scaled = downscale(original, width, height, alpha);
+
+                Files.createDirectories(target.getParent());
+                Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+                try {
+                    try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                        writer.setOutput(out);
+                        writer.write(scaled);
+                    } finally {
+                        writer.dispose();
+                    }
+                    Files.writeString(typeFile, writer.getOriginatingProvider().getMIMETypes()[0], StandardCharsets.UTF_8);
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                return true;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // An empty marker next to where the rendition would be; never removed, as the source never changes
+    private static void markNoVariant(Path target) {
+        try {
+            Files.createDirectories(target.getParent());
+            Files.writeString(noVariantPath(target), "", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Could not record that {} has no rendition", target.getFileName(), e);
+        }
+    }
+
+    private static Path noVariantPath(Path target) {
+        return target.resolveSibling(target.getFileName() + NO_VARIANT_SUFFIX);
+    }
+
+    // Halve repeatedly then finish with one bilinear step; a single large bilinear step aliases badly
+    private static BufferedImage downscale(BufferedImage image, int width, int height, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g.dispose();
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.evenue.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Single-node waiting rooms held in memory; each event's line is guarded by its own monitor
+@Component
+@ConditionalOnProperty(name = "evenue.queue.backend", havingValue = "memory", matchIfMissing = true)
+public class InMemoryAdmissionQueueBackend implements AdmissionQueueBackend {
+
+    private final ConcurrentMap<Long, EventLine> lines = new ConcurrentHashMap<>();
+
+    @Override
+    public Status join(Long eventId, String token, long nowMillis) {
+        while (true) {
+            EventLine line = lines.computeIfAbsent(eventId, id -> new EventLine());
+            synchronized (line) {
+                // admit() may have removed the line, empty, between the lookup and the lock; join a fresh one
+                if (lines.get(eventId) != line) {
+                    continue;
+                }
+                if (!line.admitted.containsKey(token) && !line.waiting.containsKey(token)) {
+                    line.waiting.put(token, new Waiter(line.nextSequence++, nowMillis));
+                }
+                return line.status(token, nowMillis);
+            }
+        }
+    }
+
+    @Override
+    public Status status(Long eventId, String token, long nowMillis) {
+        EventLine line = lines.get(eventId);
+        if (line == null) {
+            return new Status(State.UNKNOWN, 0);
+        }
+        synchronized (line) {
+            return line.status(token, nowMillis);
+        }
+    }
+
+    @Override
+    public int admit(Long eventId, int maxNew, int maxActive, long admissionMillis, long abandonMillis, long nowMillis) {
+        EventLine line = lines.get(eventId);
+        if (line == null) {
+            return 0;
+        }
+        synchronized (line) {
+            line.admitted.values().removeIf(expiresAt -> expiresAt <= nowMillis);
+            line.waiting.values().removeIf(waiter -> nowMillis - waiter.lastSeenMillis > abandonMillis);
+
+            int slots = Math.min(maxNew, maxActive - line.admitted.size());
+            int admitted = 0;
+            Iterator<Map.Entry<String, Waiter>> front = line.waiting.entrySet().iterator();
+            while (admitted < slots && front.hasNext()) {
+                line.admitted.put(front.next().getKey(), nowMillis + admissionMillis);
+                front.remove();
+                admitted++;
+            }
+
+            if (line.waiting.isEmpty() && line.admitted.isEmpty()) {
+                lines.remove(eventId, line);
+            }
+            return admitted;
+        }
+    }
+
+    @Override
+    public void release(Long eventId, String token) {
+        EventLine line = lines.get(eventId);
+        if (line != null) {
+            synchronized (line) {
+                line.admitted.remove(token);
+            }
+        }
+    }
+
+    @Override
+    public Collection<Long> activeEvents() {
+        return new ArrayList<>(lines.keySet());
+    }
+
+    private static final class EventLine {
+        private long nextSequence;
+        // Insertion order is arrival order, so the first entry is the front of the line
+        private final LinkedHashMap<String, Waiter> waiting = new LinkedHashMap<>();
+        // Token -> admission expiry
+        private final Map<String, Long> admitted = new HashMap<>();
+
+        private Status status(String token, long nowMillis) {
+            Long admittedUntil = admitted.get(token);
+            if (admittedUntil != null && admittedUntil > nowMillis) {
+                return new Status(State.ADMITTED, 0);
+            }
+            Waiter waiter = waiting.get(token);
+            if (waiter == null) {
+                return new Status(State.UNKNOWN, 0);
+            }
+            waiter.lastSeenMillis = nowMillis;
+            // Sequence distance to the front; people who left in between are not subtracted
+            long front = waiting.values().iterator().next().sequence;
+            return new Status(State.WAITING, waiter.sequence - front);
+        }
+    }
+
+    private static final class Waiter {
+        private final long sequence;
+        private long lastSeenMillis;
+
+        private Waiter(long sequence, long lastSeenMillis) {
+            this.sequence = sequence;
+            this.lastSeenMillis = lastSeenMillis;
+        }
+    }
+}
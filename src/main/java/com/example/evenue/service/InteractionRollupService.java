@@ -0,0 +1,221 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.userBehaviour.EventInteractionDailyDao;
+import com.example.evenue.models.userBehaviour.EventInteractionDailyModel;
+import com.example.evenue.models.userBehaviour.InteractionCount;
+import com.example.evenue.models.userBehaviour.UserBehaviourEvent;
+import com.example.evenue.models.userBehaviour.UserCategoryInteractionDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interaction counts rolled up per (event, interaction type, day) and per (user, event
+ * category, interaction type). BehaviourIngestionService adds every batch it writes to
+ * user_behaviour to the rollups in the same transaction, so they always agree with the
+ * table, and questions like "how many views did this event get this month" read a few
+ * rollup rows instead of scanning user_behaviour.
+ */
+@Service
+public class InteractionRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InteractionRollupService.class);
+
+    // Only events that still exist are counted, matching the NULL stored for unknown events
+    private static final String UPSERT_EVENT_SQL = "INSERT INTO event_interaction_daily " +
+            "(event_id, interaction_type, interaction_date, interaction_count) " +
+            "SELECT ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM events WHERE event_id = ?) " +
+            "ON CONFLICT (event_id, interaction_type, interaction_date) " +
+            "DO UPDATE SET interaction_count = interaction_count + excluded.interaction_count";
+
+    // The category of the interaction's event, so a page cannot credit another category; an
+    // interaction without an event counts for the category sent with it, if that exists
+    private static final String UPSERT_CATEGORY_SQL = "INSERT INTO user_category_interactions " +
+            "(user_id, event_category_id, interaction_type, interaction_count) " +
+            "SELECT ?, c.id, ?, ? FROM event_categories c WHERE c.id = COALESCE(" +
+            "(SELECT category_id FROM events WHERE event_id = ?), (SELECT id FROM event_categories WHERE id = ?)) " +
+            "ON CONFLICT (user_id, event_category_id, interaction_type) " +
+            "DO UPDATE SET interaction_count = interaction_count + excluded.interaction_count";
+
+    // Category a user_behaviour row counts for, as UPSERT_CATEGORY_SQL chooses it
+    private static final String ROLLUP_CATEGORY =
+            "CASE WHEN ub.event_id IS NULL THEN ub.event_category_id ELSE e.category_id END";
+
+    // The upserts need these; Hibernate does not create unique constraints on SQLite
+    private static final List<String> UNIQUE_INDEX_DDL = List.of(
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_event_interaction_daily " +
+                    "ON event_interaction_daily (event_id, interaction_type, interaction_date)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_user_category_interactions " +
+                    "ON user_category_interactions (user_id, event_category_id, interaction_type)"
+    );
+
+    private record EventKey(Long eventId, String interactionType, LocalDate date) {
+    }
+
+    private record CategoryKey(Integer userId, Long eventCategoryId, Long eventId, String interactionType) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EventInteractionDailyDao eventInteractionDailyDao;
+
+    @Autowired
+    private UserCategoryInteractionDao userCategoryInteractionDao;
+
+    /**
+     * Add interactions just written to user_behaviour to the rollups. Must run in the
+     * transaction that wrote them.
+     *
+     * @param inserted the batch update counts; interactions that wrote no row are not counted
+     */
+    public void record(List<UserBehaviourEvent> batch, int[] inserted) {
+        Map<EventKey, Long> eventCounts = new HashMap<>();
+        Map<CategoryKey, Long> categoryCounts = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            UserBehaviourEvent event = batch.get(i);
+            if (inserted[i] <= 0 || event.interactionType() == null) {
+                continue;
+            }
+            if (event.eventId() != null) {
+                eventCounts.merge(new EventKey(event.eventId(), event.interactionType(),
+                        event.interactionTimestamp().toLocalDate()), 1L, Long::sum);
+            }
+            if (event.eventId() != null) {
+                categoryCounts.merge(new CategoryKey(event.userId(), null, event.eventId(),
+                        event.interactionType()), 1L, Long::sum);
+            } else if (event.eventCategoryId() != null) {
+                categoryCounts.merge(new CategoryKey(event.userId(), event.eventCategoryId(), null,
+                        event.interactionType()), 1L, Long::sum);
+            }
+        }
+        upsertEventCounts(eventCounts);
+        upsertCategoryCounts(categoryCounts);
+    }
+
+    /**
+     * Create the rollups' unique indexes, and build the rollups from user_behaviour when they
+     * are empty, i.e. on the first start with rollups. Must run in a transaction, before
+     * anything else writes behaviour.
+     */
+    public void initialize() {
+        for (String statement : UNIQUE_INDEX_DDL) {
+            jdbcTemplate.execute(statement);
+        }
+
+        Integer eventRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM event_interaction_daily", Integer.class);
+        if (eventRows != null && eventRows == 0) {
+            // Days are in the JVM zone, as the timestamps were written, so they are counted here rather than in SQL
+            Map<EventKey, Long> eventCounts = new HashMap<>();
+            jdbcTemplate.query("SELECT event_id, interaction_type, interaction_timestamp FROM user_behaviour " +
+                            "WHERE event_id IS NOT NULL AND interaction_type IS NOT NULL AND interaction_timestamp IS NOT NULL",
+                    rs -> {
+                        LocalDate date = new Timestamp(rs.getLong(3)).toLocalDateTime().toLocalDate();
+                        eventCounts.merge(new EventKey(rs.getLong(1), rs.getString(2), date), 1L, Long::sum);
+                    });
+            upsertEventCounts(eventCounts);
+            if (!eventCounts.isEmpty()) {
+                logger.info("Backfilled {} event interaction rollup rows", eventCounts.size());
+            }
+        }
+
+        Integer categoryRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_category_interactions", Integer.class);
+        if (categoryRows != null && categoryRows == 0) {
+            int rows = jdbcTemplate.update("INSERT INTO user_category_interactions " +
+                    "(user_id, event_category_id, interaction_type, interaction_count) " +
+                    "SELECT ub.user_id, " + ROLLUP_CATEGORY + ", ub.interaction_type, COUNT(*) " +
+                    "FROM user_behaviour ub LEFT JOIN events e ON e.event_id = ub.event_id " +
+                    "WHERE ub.user_id IS NOT NULL AND ub.interaction_type IS NOT NULL " +
+                    "AND " + ROLLUP_CATEGORY + " IN (SELECT id FROM event_categories) " +
+                    "GROUP BY ub.user_id, " + ROLLUP_CATEGORY + ", ub.interaction_type");
+            if (rows > 0) {
+                logger.info("Backfilled {} user category interaction rollup rows", rows);
+            }
+        }
+    }
+
+    // Interaction counts of one event by type, between two days inclusive
+    public Map<String, Long> getEventCounts(Long eventId, LocalDate from, LocalDate to) {
+        return getEventCounts(List.of(eventId), from, to).getOrDefault(eventId, Map.of());
+    }
+
+    // Interaction counts by type for each of the events, between two days inclusive
+    public Map<Long, Map<String, Long>> getEventCounts(List<Long> eventIds, LocalDate from, LocalDate to) {
+        Map<Long, Map<String, Long>> counts = new HashMap<>();
+        if (eventIds.isEmpty()) {
+            return counts;
+        }
+        for (InteractionCount count : eventInteractionDailyDao.sumByEvents(eventIds, from, to)) {
+            counts.computeIfAbsent(count.getId(), id -> new HashMap<>()).put(count.getInteractionType(), count.getCount());
+        }
+        return counts;
+    }
+
+    // Day-by-day counts of one interaction type for an event; days without interactions are absent
+    public List<EventInteractionDailyModel> getDailyCounts(Long eventId, String interactionType, LocalDate from, LocalDate to) {
+        return eventInteractionDailyDao.findByEventIdAndInteractionTypeAndInteractionDateBetweenOrderByInteractionDate(
+                eventId, interactionType, from, to);
+    }
+
+    // IDs of the events with the most interactions of a type over the last `days` days, most first
+    public List<Long> getTrendingEventIds(String interactionType, int days, int limit) {
+        LocalDate today = LocalDate.now();
+        List<Long> eventIds = new ArrayList<>();
+        for (InteractionCount count : eventInteractionDailyDao.findTop(interactionType, today.minusDays(days - 1L), today,
+                PageRequest.of(0, limit))) {
+            eventIds.add(count.getId());
+        }
+        return eventIds;
+    }
+
+    // A user's interaction counts per category and type, most engaged first
+    public List<InteractionCount> getUserCategoryCounts(Integer userId) {
+        return userCategoryInteractionDao.findByUser(userId);
+    }
+
+    // Total interactions of a user per category, most engaged first
+    public Map<Long, Long> getCategoryEngagement(Integer userId) {
+        Map<Long, Long> totals = new HashMap<>();
+        for (InteractionCount count : userCategoryInteractionDao.findByUser(userId)) {
+            totals.merge(count.getId(), count.getCount(), Long::sum);
+        }
+        Map<Long, Long> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .forEachOrdered(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private void upsertEventCounts(Map<EventKey, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> rows.add(new Object[]{
+                key.eventId(), key.interactionType(), Date.valueOf(key.date()), count, key.eventId()}));
+        jdbcTemplate.batchUpdate(UPSERT_EVENT_SQL, rows);
+    }
+
+    private void upsertCategoryCounts(Map<CategoryKey, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> rows.add(new Object[]{
+                key.userId(), key.interactionType(), count, key.eventId(), key.eventCategoryId()}));
+        jdbcTemplate.batchUpdate(UPSERT_CATEGORY_SQL, rows);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.evenue.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * One-off migration of images stored inline as Base64 "data:" URIs in
+ * {@code events.event_image} and {@code post_images.image_url} into the media
+ * store. Rows are rewritten one at a time to /media/{hash} references; rows
+ * that already hold a reference are left alone, so re-running it is harmless.
+ */
+@Service
+public class MediaMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaMigrationService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${evenue.media.migrate-inline-images:true}")
+    private boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInlineImages() {
+        if (!enabled) {
+            return;
+        }
+        int events = migrate("events", "event_id", "event_image");
+        int postImages = migrate("post_images", "id", "image_url");
+        if (events + postImages > 0) {
+            logger.info("Moved {} event images and {} post images into the media store", events, postImages);
+        }
+    }
+
+    private int migrate(String table, String idColumn, String imageColumn) {
+        // Select only the keys so the inline images are loaded one row at a time
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT " + idColumn + " FROM " + table + " WHERE " + imageColumn + " LIKE 'data:%'", Long.class);
+
+        int migrated = 0;
+        for (Long id : ids) {
+            try {
+                String dataUri = jdbcTemplate.queryForObject(
+                        "SELECT " + imageColumn + " FROM " + table + " WHERE " + idColumn + " = ?", String.class, id);
+                String mediaUrl = fileStorageService.storeDataUri(dataUri);
+                jdbcTemplate.update(
+                        "UPDATE " + table + " SET " + imageColumn + " = ? WHERE " + idColumn + " = ?", mediaUrl, id);
+                migrated++;
+            } catch (Exception e) {
+                logger.warn("Could not migrate image for {} {}", table, id, e);
+            }
+        }
+        return migrated;
+    }
+}
@@ -14,6 +14,9 @@ import java.time.chrono.ChronoLocalDate;
 import java.time.chrono.ChronoLocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,26 +29,40 @@ public class PostService {
     private PostImageDao postImageDao;
 
     @Autowired
-    private FileStorageService fileStorageService;  // Handles Base64 conversion
+    private FileStorageService fileStorageService;  // Stores uploaded images in the media store
 
     @Autowired
     private EventDao eventDao;
 
+    @Autowired
+    private FullTextSearchService fullTextSearchService;
+
     /**
-     * Create a new post with optional images converted to Base64.
+     * Create a new post with optional images saved to the media store.
      *
      * @param content   The content of the post.
      * @param eventId   The ID of the event associated with the post.
      * @param user      The user creating the post.
-     * @param images    A list of optional images to be converted to Base64.
-     * @return          The created post with Base64-encoded images.
+     * @param images    A list of optional images to be stored.
+     * @return          The created post.
      */
     public PostModel createPost(String title, String content, Long eventId, UserModel user, List<MultipartFile> images) {
         // Step 1: Retrieve the EventModel by eventId
         EventModel event = eventDao.findById(eventId)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
 
-        // Step 2: Create and save the post
+        // Step 2: Store images in the media store first, so a rejected upload leaves no post behind
+        List<String> imageUrls = new ArrayList<>();
+        if (images != null && !images.isEmpty()) {
+            for (MultipartFile image : images) {
+                String imageUrl = fileStorageService.storeImage(image);
+                if (imageUrl != null) {
+                    imageUrls.add(imageUrl);
+                }
+            }
+        }
+
+        // Step 3: Create and save the post
         PostModel post = new PostModel();
         post.setTitle(title);
         post.setContent(content);
@@ -54,28 +71,22 @@ public class PostService {
         post.setCreatedAt(LocalDateTime.now());
         postDao.save(post);
 
-        // Step 3: Save Base64 images if they are provided
-        if (images != null && !images.isEmpty()) {
-            for (MultipartFile image : images) {
-                String base64Image = fileStorageService.convertToBase64AndStore(image);
-
-                if (base64Image != null) {
-                    PostImageModel postImage = new PostImageModel();
-                    postImage.setPost(post);
-                    postImage.setImageUrl(base64Image); // Save the Base64 string
-                    postImage.setCreatedAt(LocalDateTime.now());
-                    postImageDao.save(postImage);
-                }
-            }
+        // Step 4: Save the image URLs
+        for (String imageUrl : imageUrls) {
+            PostImageModel postImage = new PostImageModel();
+            postImage.setPost(post);
+            postImage.setImageUrl(imageUrl); // Save the /media/{hash} reference
+            postImage.setCreatedAt(LocalDateTime.now());
+            postImageDao.save(postImage);
         }
 
         return post;
     }
 
     /**
-     * Get all posts along with their Base64-encoded images.
+     * Get all posts along with their image URLs.
      *
-     * @return A list of post responses containing Base64-encoded images.
+     * @return A list of post responses containing image URLs.
      */
     public List<PostResponse> getAllPosts() {
         List<PostModel> posts = postDao.findAll();
@@ -88,10 +99,10 @@ public class PostService {
             postResponse.setContent(post.getContent());
             postResponse.setCreatedAt(post.getCreatedAt());
 
-            // Get associated Base64 images for each post
+            // Get associated images for each post
             List<PostImageModel> images = postImageDao.findByPostId(post.getId());
             List<String> imageUrls = images.stream()
-                    .map(PostImageModel::getImageUrl) // Base64 string here
+                    .map(PostImageModel::getImageUrl)
                     .collect(Collectors.toList());
 
             postResponse.setImageUrls(imageUrls);
@@ -101,6 +112,36 @@ public class PostService {
         return postResponses;
     }
 
+    /**
+     * Search posts by title and content. Uses the FTS index (ranked by relevance)
+     * when enabled, otherwise falls back to a LIKE query ordered by date.
+     *
+     * @param query The search text.
+     * @return      The matching posts.
+     */
+    public List<PostResponse> searchPosts(String query) {
+        if (query == null || query.isBlank()) {
+            return getAllPosts();
+        }
+
+        List<PostModel> posts;
+        if (fullTextSearchService.isEnabled()) {
+            List<Long> rankedIds = fullTextSearchService.searchPostIds(query);
+            Map<Long, PostModel> byId = postDao.findAllById(rankedIds).stream()
+                    .collect(Collectors.toMap(PostModel::getId, Function.identity()));
+            posts = rankedIds.stream()
+                    .map(byId::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } else {
+            posts = postDao.searchByTitleOrContent(query.trim());
+        }
+
+        return posts.stream()
+                .map(this::buildPostResponse)
+                .collect(Collectors.toList());
+    }
+
     public List<PostResponse> getUpcomingPosts() {
         List<PostModel> allPosts = postDao.findAll();
         return allPosts.stream()
@@ -119,10 +160,10 @@ public class PostService {
 
 
     /**
-     * Retrieve a post by its ID along with Base64-encoded images.
+     * Retrieve a post by its ID along with its image URLs.
      *
      * @param postId The ID of the post to retrieve.
-     * @return       The post response containing Base64-encoded images.
+     * @return       The post response containing image URLs.
      */
     public PostResponse getPostById(Long postId) {
         // Fetch the post from the database or throw an exception if not found
@@ -136,10 +177,10 @@ public class PostService {
         postResponse.setContent(post.getContent());
         postResponse.setCreatedAt(post.getCreatedAt());
 
-        // Get associated Base64 images for this post
+        // Get associated images for this post
         List<PostImageModel> images = postImageDao.findByPostId(post.getId());
         List<String> imageUrls = images.stream()
-                .map(PostImageModel::getImageUrl) // Base64 string here
+                .map(PostImageModel::getImageUrl)
                 .collect(Collectors.toList());
 
         postResponse.setImageUrls(imageUrls);
@@ -183,10 +224,10 @@ public class PostService {
             postResponse.setContent(post.getContent());
             postResponse.setCreatedAt(post.getCreatedAt());
 
-            // Get associated Base64 images for each post
+            // Get associated images for each post
             List<PostImageModel> images = postImageDao.findByPostId(post.getId());
             List<String> imageUrls = images.stream()
-                    .map(PostImageModel::getImageUrl) // Base64 string here
+                    .map(PostImageModel::getImageUrl)
                     .collect(Collectors.toList());
 
             postResponse.setImageUrls(imageUrls);
@@ -229,6 +270,17 @@ public class PostService {
     public void updatePost(Long postId, String title, String content, Long eventId, List<MultipartFile> images, List<String> removeImages) {
         PostModel post = postDao.findById(postId).orElseThrow(() -> new RuntimeException("Post not found"));
 
+        // Store new images first, so a rejected upload leaves the post unchanged
+        List<String> imageUrls = new ArrayList<>();
+        if (images != null && !images.isEmpty()) {
+            for (MultipartFile image : images) {
+                String imageUrl = fileStorageService.storeImage(image);
+                if (imageUrl != null) {
+                    imageUrls.add(imageUrl);
+                }
+            }
+        }
+
         // Update the post's title and content
         post.setTitle(title); // Update the title
         post.setContent(content);
@@ -244,14 +296,11 @@ public class PostService {
         }
 
         // Add new images
-        if (images != null && !images.isEmpty()) {
-            for (MultipartFile image : images) {
-                String base64Image = fileStorageService.convertToBase64AndStore(image);
-                PostImageModel postImage = new PostImageModel();
-                postImage.setPost(post);
-                postImage.setImageUrl(base64Image);
-                postImageDao.save(postImage);
-            }
+        for (String imageUrl : imageUrls) {
+            PostImageModel postImage = new PostImageModel();
+            postImage.setPost(post);
+            postImage.setImageUrl(imageUrl);
+            postImageDao.save(postImage);
         }
 
         // Save the updated post
@@ -0,0 +1,237 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.tickets.PurchaseIdempotencyDao;
+import com.example.evenue.models.tickets.PurchaseIdempotencyModel;
+import com.example.evenue.models.tickets.TicketDao;
+import com.example.evenue.models.tickets.TicketModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotent purchases. The first request with a key performs the purchase and, in the
+ * same transaction, records which tickets it produced and a hash of what was asked for;
+ * a replay within the TTL gets those tickets back without touching inventory, while the
+ * same key sent for a different purchase is refused. A replay that arrives while the
+ * first request is still running (a double click) waits for it and shares its result.
+ * Recorded keys are looked up in a bounded in-memory cache backed by the
+ * purchase_idempotency_keys table.
+ */
+@Service
+public class PurchaseIdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurchaseIdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    // The purchase's ticket, and whether it came from an earlier request with the same key
+    public record Outcome(TicketModel ticket, boolean replayed) {
+    }
+
+    // The tickets of a cart checkout, and whether they came from an earlier request with the same key
+    public record CartOutcome(List<TicketModel> tickets, boolean replayed) {
+    }
+
+    // The tickets a key produced, and the hash of the request that produced them
+    public record Recorded(List<Long> ticketIds, String requestHash) {
+    }
+
+    @Autowired
+    private PurchaseIdempotencyDao purchaseIdempotencyDao;
+
+    @Autowired
+    private TicketDao ticketDao;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${evenue.idempotency.wait-seconds:30}")
+    private long waitSeconds;
+
+    private final long ttlMinutes;
+
+    // Scoped key -> completed purchase
+    private final ExpiringCache<String, Recorded> completed;
+
+    // Scoped key -> purchase still running
+    private final ConcurrentMap<String, CompletableFuture<Recorded>> inFlight = new ConcurrentHashMap<>();
+
+    public PurchaseIdempotencyService(@Value("${evenue.idempotency.ttl-minutes:1440}") long ttlMinutes,
+                                      @Value("${evenue.idempotency.max-cached-keys:10000}") int maxCachedKeys) {
+        this.ttlMinutes = ttlMinutes;
+        this.completed = new ExpiringCache<>("idempotencyKeys", maxCachedKeys, ttlMinutes * 60_000);
+    }
+
+    /**
+     * Run a purchase at most once per key and user. Without a key the purchase simply runs.
+     * The key is recorded in the purchase's own transaction, so a purchase is never committed
+     * without it; a failed purchase records nothing, so the same key may be retried.
+     *
+     * @param request what is being bought (ticket type, quantity, hold), in any stable text form
+     * @throws IllegalArgumentException if the key is too long, or was used for a different request
+     */
+    public Outcome purchase(String idempotencyKey, Integer userId, String request, Supplier<TicketModel> purchase) {
+        CartOutcome outcome = purchaseAll(idempotencyKey, userId, request, () -> List.of(purchase.get()));
+        return new Outcome(outcome.tickets().get(0), outcome.replayed());
+    }
+
+    // As purchase(), for a checkout that produces several tickets at once
+    public CartOutcome purchaseAll(String idempotencyKey, Integer userId, String request,
+                                   Supplier<List<TicketModel>> purchase) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return new CartOutcome(purchase.get(), false);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key is too long.");
+        }
+        String key = scopedKey(idempotencyKey, userId);
+        String requestHash = hash(request);
+
+        CompletableFuture<Recorded> mine = new CompletableFuture<>();
+        CompletableFuture<Recorded> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return awaitRunning(running, requestHash);
+        }
+
+        try {
+            Recorded earlier = findRecorded(key);
+            if (earlier != null) {
+                mine.complete(earlier);
+                return new CartOutcome(replayedTickets(earlier, requestHash), true);
+            }
+
+            List<TicketModel> tickets = transactionTemplate.execute(status -> {
+                List<TicketModel> purchased = purchase.get();
+                purchaseIdempotencyDao.save(new PurchaseIdempotencyModel(key, userId, ticketIds(purchased),
+                        requestHash, LocalDateTime.now().plusMinutes(ttlMinutes)));
+                return purchased;
+            });
+            Recorded recorded = new Recorded(ticketIds(tickets), requestHash);
+            completed.put(key, recorded);
+            mine.complete(recorded);
+            return new CartOutcome(tickets, false);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // The ticket an earlier, completed request with this key and the same parameters produced, if any
+    public Optional<TicketModel> findCompleted(String idempotencyKey, Integer userId, String request) {
+        return findAllCompleted(idempotencyKey, userId, request).flatMap(tickets -> tickets.stream().findFirst());
+    }
+
+    // The tickets an earlier, completed request with this key and the same parameters produced, if any
+    public Optional<List<TicketModel>> findAllCompleted(String idempotencyKey, Integer userId, String request) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return Optional.empty();
+        }
+        Recorded recorded = findRecorded(scopedKey(idempotencyKey, userId));
+        if (recorded == null || !hash(request).equals(recorded.requestHash())) {
+            return Optional.empty();
+        }
+        List<TicketModel> tickets = ticketDao.findAllById(recorded.ticketIds());
+        return tickets.size() == recorded.ticketIds().size() ? Optional.of(tickets) : Optional.empty();
+    }
+
+    // Drop expired keys from the table; the cache expires its own entries
+    @Scheduled(fixedDelayString = "${evenue.idempotency.cleanup-interval-ms:3600000}")
+    public void deleteExpiredKeys() {
+        int deleted = purchaseIdempotencyDao.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired purchase idempotency keys", deleted);
+        }
+    }
+
+    public ExpiringCache<String, Recorded> getCache() {
+        return completed;
+    }
+
+    // Keys are per user, so one user's key can never return another user's ticket
+    private static String scopedKey(String idempotencyKey, Integer userId) {
+        return userId + ":" + idempotencyKey;
+    }
+
+    // Wait for the request already running with the same key, and share its outcome
+    private CartOutcome awaitRunning(CompletableFuture<Recorded> running, String requestHash) {
+        try {
+            Recorded recorded = running.get(waitSeconds, TimeUnit.SECONDS);
+            return new CartOutcome(replayedTickets(recorded, requestHash), true);
+        } catch (ExecutionException e) {
+            // The first request failed; report the same failure
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Purchase failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Your purchase is still being processed. Please check your tickets shortly.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the purchase", e);
+        }
+    }
+
+    // The tickets of an earlier request, in the order it bought them, provided it asked for the same purchase
+    private List<TicketModel> replayedTickets(Recorded recorded, String requestHash) {
+        if (!recorded.requestHash().equals(requestHash)) {
+            throw new IllegalArgumentException("This purchase request was already used for a different order. Please start again.");
+        }
+        Map<Long, TicketModel> byId = new HashMap<>();
+        for (TicketModel ticket : ticketDao.findAllById(recorded.ticketIds())) {
+            byId.put(ticket.getId().longValue(), ticket);
+        }
+        List<TicketModel> tickets = new ArrayList<>(recorded.ticketIds().size());
+        for (Long ticketId : recorded.ticketIds()) {
+            TicketModel ticket = byId.get(ticketId);
+            if (ticket == null) {
+                throw new IllegalStateException("The tickets of this purchase no longer exist.");
+            }
+            tickets.add(ticket);
+        }
+        return tickets;
+    }
+
+    // What an earlier request with the key produced, unless it expired
+    private Recorded findRecorded(String key) {
+        return completed.get(key, k -> purchaseIdempotencyDao.findActive(k, LocalDateTime.now())
+                .map(row -> new Recorded(row.getTicketIdList(), row.getRequestHash())).orElse(null));
+    }
+
+    private static List<Long> ticketIds(List<TicketModel> tickets) {
+        return tickets.stream().map(ticket -> ticket.getId().longValue()).toList();
+    }
+
+    private static String hash(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.events.EventCategory;
+import com.example.evenue.models.events.EventCategoryDao;
+import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.tickets.TicketTypeDao;
+import com.example.evenue.models.tickets.TicketTypeModel;
+import com.example.evenue.models.users.UserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Process-wide cache for read-mostly reference data: the category list, the
+ * ticket types of each event and each user's preferred category IDs. Ticket-type
+ * entries carry remaining quantities, so every write to a ticket type (including
+ * purchases) must call {@link #invalidateTicketTypes(Long)}; TicketTypeService does
+ * this for its writes. UserService likewise invalidates preferred categories.
+ * Ticket types are held as detached copies and every caller gets its own copies,
+ * so nothing a request does to them reaches other threads or the persistence context.
+ */
+@Service
+public class ReferenceDataCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    private static final String ALL_CATEGORIES = "all";
+
+    @Autowired
+    private EventCategoryDao eventCategoryDao;
+
+    @Autowired
+    private TicketTypeDao ticketTypeDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    private final ExpiringCache<String, List<EventCategory>> categories;
+
+    private final ExpiringCache<Long, List<TicketTypeModel>> ticketTypesByEvent;
+
+    private final ExpiringCache<Integer, List<Long>> preferredCategoriesByUser;
+
+    public ReferenceDataCache(@Value("${evenue.cache.category-ttl-seconds:600}") long categoryTtlSeconds,
+                              @Value("${evenue.cache.ticket-type-ttl-seconds:60}") long ticketTypeTtlSeconds,
+                              @Value("${evenue.cache.ticket-type-max-events:1000}") int ticketTypeMaxEvents,
+                              @Value("${evenue.cache.preferred-category-ttl-seconds:600}") long preferredCategoryTtlSeconds,
+                              @Value("${evenue.cache.preferred-category-max-users:10000}") int preferredCategoryMaxUsers) {
+        this.categories = new ExpiringCache<>("categories", 1, categoryTtlSeconds * 1000);
+        this.ticketTypesByEvent = new ExpiringCache<>("ticketTypes", ticketTypeMaxEvents, ticketTypeTtlSeconds * 1000);
+        this.preferredCategoriesByUser = new ExpiringCache<>("preferredCategories", preferredCategoryMaxUsers,
+                preferredCategoryTtlSeconds * 1000);
+    }
+
+    // All event categories
+    public List<EventCategory> getCategories() {
+        return categories.get(ALL_CATEGORIES, key -> List.copyOf(eventCategoryDao.findAll()));
+    }
+
+    // Ticket types of an event, as last loaded from the database; the returned models are the caller's own
+    public List<TicketTypeModel> getTicketTypes(Long eventId) {
+        List<TicketTypeModel> cached = ticketTypesByEvent.get(eventId,
+                id -> ticketTypeDao.findByEventId(id).stream().map(ReferenceDataCache::copyOf).toList());
+        return cached.stream().map(ReferenceDataCache::copyOf).collect(Collectors.toList());
+    }
+
+    // Unmanaged copy of a ticket type; the event is a reference holding only its ID
+    private static TicketTypeModel copyOf(TicketTypeModel ticketType) {
+        EventModel event = new EventModel();
+        event.setId(ticketType.getEvent().getId());
+
+        TicketTypeModel copy = new TicketTypeModel();
+        copy.setTicketTypeId(ticketType.getTicketTypeId());
+        copy.setEvent(event);
+        copy.setTypeName(ticketType.getTypeName());
+        copy.setDescription(ticketType.getDescription());
+        copy.setPrice(ticketType.getPrice());
+        copy.setQuantity(ticketType.getQuantity());
+        copy.setRemainingQuantity(ticketType.getRemainingQuantity());
+        return copy;
+    }
+
+    // IDs of a user's preferred categories in ID order, as last loaded from the database
+    public List<Long> getPreferredCategoryIds(Integer userId) {
+        return preferredCategoriesByUser.get(userId, id -> List.copyOf(userDao.findPreferredCategoryIds(id)));
+    }
+
+    public void invalidateCategories() {
+        categories.invalidateAll();
+    }
+
+    public void invalidateTicketTypes(Long eventId) {
+        if (eventId == null) {
+            ticketTypesByEvent.invalidateAll();
+        } else {
+            ticketTypesByEvent.invalidate(eventId);
+        }
+    }
+
+    public void invalidatePreferredCategories(Integer userId) {
+        preferredCategoriesByUser.invalidate(userId);
+    }
+
+    public ExpiringCache<String, List<EventCategory>> getCategoryCache() {
+        return categories;
+    }
+
+    public ExpiringCache<Long, List<TicketTypeModel>> getTicketTypeCache() {
+        return ticketTypesByEvent;
+    }
+
+    public ExpiringCache<Integer, List<Long>> getPreferredCategoryCache() {
+        return preferredCategoriesByUser;
+    }
+
+    // Periodic hit/miss summary
+    @Scheduled(fixedDelayString = "${evenue.cache.stats-log-interval-ms:300000}",
+            initialDelayString = "${evenue.cache.stats-log-interval-ms:300000}")
+    public void logStats() {
+        if (categories.getHits() + categories.getMisses() + ticketTypesByEvent.getHits() + ticketTypesByEvent.getMisses()
+                + preferredCategoriesByUser.getHits() + preferredCategoriesByUser.getMisses() > 0) {
+            logger.info("Reference data cache [{}] [{}] [{}]", categories, ticketTypesByEvent, preferredCategoriesByUser);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.tickets.TicketModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Self-verifying ticket codes: base32 of a version byte, the ticket, event and ticket
+ * type IDs and the quantity (as varints), followed by a truncated HMAC-SHA256 tag.
+ * A forged, altered or wrong-event code is rejected from the code alone, so the
+ * database is only needed to record that a ticket was scanned.
+ */
+@Service
+public class TicketCodeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketCodeService.class);
+
+    private static final byte VERSION = 1;
+    private static final int TAG_BYTES = 10; // 80-bit tag
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final int[] ALPHABET_INDEX = new int[128];
+
+    static {
+        Arrays.fill(ALPHABET_INDEX, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            ALPHABET_INDEX[ALPHABET[i]] = i;
+        }
+    }
+
+    // What a verified code says about its ticket
+    public record Claims(long ticketId, long eventId, long ticketTypeId, int quantity) {
+    }
+
+    private final SecretKeySpec key;
+
+    // Mac instances are not thread-safe
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    public TicketCodeService(@Value("${evenue.tickets.signing-key:}") String configuredKey,
+                             @Value("${evenue.tickets.signing-key-file:ticket-signing.key}") Path keyFile) {
+        this.key = new SecretKeySpec(loadKey(configuredKey, keyFile), ALGORITHM);
+    }
+
+    public String sign(TicketModel ticket) {
+        return sign(ticket.getId(), ticket.getEvent().getId(), ticket.getTicketType().getTicketTypeId(), ticket.getQuantity());
+    }
+
+    public String sign(long ticketId, long eventId, long ticketTypeId, int quantity) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(24);
+        payload.write(VERSION);
+        writeVarint(payload, ticketId);
+        writeVarint(payload, eventId);
+        writeVarint(payload, ticketTypeId);
+        writeVarint(payload, quantity);
+
+        byte[] body = payload.toByteArray();
+        byte[] code = Arrays.copyOf(body, body.length + TAG_BYTES);
+        System.arraycopy(tag(body, body.length), 0, code, body.length, TAG_BYTES);
+        return encode(code);
+    }
+
+    /**
+     * Check a code's signature and read its contents. No I/O.
+     *
+     * @return the claims, or null if the code is malformed or its tag does not match
+     */
+    public Claims verify(String code) {
+        byte[] bytes = decode(code);
+        if (bytes == null || bytes.length <= TAG_BYTES + 1 || bytes[0] != VERSION) {
+            return null;
+        }
+
+        int bodyLength = bytes.length - TAG_BYTES;
+        byte[] expected = Arrays.copyOf(tag(bytes, bodyLength), TAG_BYTES);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, bodyLength, bytes.length))) {
+            return null;
+        }
+
+        int[] position = {1};
+        long ticketId = readVarint(bytes, position, bodyLength);
+        long eventId = readVarint(bytes, position, bodyLength);
+        long ticketTypeId = readVarint(bytes, position, bodyLength);
+        long quantity = readVarint(bytes, position, bodyLength);
+        if (quantity < 0 || quantity > Integer.MAX_VALUE || position[0] != bodyLength) {
+            return null;
+        }
+        return new Claims(ticketId, eventId, ticketTypeId, (int) quantity);
+    }
+
+    // Whether the code has the signed format at all (older tickets have UUID codes)
+    public boolean isSignedFormat(String code) {
+        byte[] bytes = decode(code);
+        return bytes != null && bytes.length > TAG_BYTES + 1 && bytes[0] == VERSION;
+    }
+
+    private byte[] tag(byte[] bytes, int length) {
+        Mac mac = macs.get();
+        mac.update(bytes, 0, length);
+        return mac.doFinal();
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    // Configured key (Base64) if set, else the one in keyFile. A missing key file is generated, readable by
+    // its owner only; that is for development, as every instance and working directory would get its own key
+    private static byte[] loadKey(String configuredKey, Path keyFile) {
+        if (configuredKey != null && !configuredKey.isBlank()) {
+            return Base64.getDecoder().decode(configuredKey.trim());
+        }
+        try {
+            if (Files.exists(keyFile)) {
+                return Base64.getDecoder().decode(Files.readString(keyFile).trim());
+            }
+            byte[] generated = new byte[32];
+            new SecureRandom().nextBytes(generated);
+            if (keyFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(keyFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            }
+            Files.writeString(keyFile, Base64.getEncoder().encodeToString(generated));
+            logger.warn("Generated a new ticket signing key in {}; deployments must set evenue.tickets.signing-key " +
+                    "or point evenue.tickets.signing-key-file at a shared key", keyFile.toAbsolutePath());
+            return generated;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read or create the ticket signing key " + keyFile, e);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Ticket code fields must not be negative");
+        }
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // Returns -1 if the varint is truncated or too long
+    private static long readVarint(byte[] bytes, int[] position, int limit) {
+        long value = 0;
+        for (int shift = 0; shift < 63 && position[0] >= 0 && position[0] < limit; shift += 7) {
+            int b = bytes[position[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        position[0] = -1;
+        return -1;
+    }
+
+    // RFC 4648 base32 without padding
+    private static String encode(byte[] bytes) {
+        StringBuilder out = new StringBuilder((bytes.length * 8 + 4) / 5);
+        int buffer = 0;
+        int bits = 0;
+        for (byte b : bytes) {
+            buffer = (buffer << 8) | (b & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                out.append(ALPHABET[(buffer >>> (bits - 5)) & 0x1F]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0) {
+            out.append(ALPHABET[(buffer << (5 - bits)) & 0x1F]);
+        }
+        return out.toString();
+    }
+
+    // Case-insensitive; null if the text is not base32
+    private static byte[] decode(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        byte[] out = new byte[text.length() * 5 / 8];
+        int buffer = 0;
+        int bits = 0;
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            int value = c < 128 ? ALPHABET_INDEX[c] : -1;
+            if (value < 0) {
+                return null;
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                out[length++] = (byte) (buffer >>> (bits - 8));
+                bits -= 8;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.tickets.TicketHoldDao;
+import com.example.evenue.models.tickets.TicketHoldModel;
+import com.example.evenue.models.tickets.TicketModel;
+import com.example.evenue.models.tickets.TicketTypeDao;
+import com.example.evenue.models.tickets.TicketTypeModel;
+import com.example.evenue.models.users.UserModel;
+import com.example.evenue.utils.HoldExpiredException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-limited ticket reservations. Placing a hold takes the tickets out of inventory
+ * (through TicketInventoryService, so holds can never oversell either); confirming it
+ * turns it into a ticket; otherwise the sweeper hands the tickets back once it expires.
+ * Pending expiries sit in a DelayQueue ordered by expiry time, so a sweep only ever
+ * touches holds that are actually due. A user has at most one hold per ticket type,
+ * enforced by a unique index; placing holds is serialised per user.
+ */
+@Service
+public class TicketHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketHoldService.class);
+
+    @Autowired
+    private TicketHoldDao ticketHoldDao;
+
+    @Autowired
+    private TicketTypeDao ticketTypeDao;
+
+    @Autowired
+    private TicketInventoryService ticketInventoryService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${evenue.holds.minutes:10}")
+    private long holdMinutes;
+
+    @Value("${evenue.holds.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    @Value("${evenue.holds.max-per-order:10}")
+    private int maxPerOrder;
+
+    @Value("${evenue.holds.max-per-user-event:20}")
+    private int maxPerUserEvent;
+
+    private final DelayQueue<PendingExpiry> expiries = new DelayQueue<>();
+
+    // hold() locks one of these by user, so a user's concurrent requests cannot both create a hold
+    private final Object[] userLocks = new Object[64];
+
+    {
+        for (int i = 0; i < userLocks.length; i++) {
+            userLocks[i] = new Object();
+        }
+    }
+
+    // Re-queue holds that were active when the application last stopped
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveHolds() {
+        // One hold per user and ticket type; Hibernate does not create unique constraints on SQLite
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_ticket_holds_user_type ON ticket_holds (user_id, ticket_type_id)");
+
+        List<Object[]> holds = ticketHoldDao.findAllHoldKeys();
+        for (Object[] row : holds) {
+            expiries.add(new PendingExpiry((Long) row[0], (Long) row[1], (Long) row[2], (Integer) row[3],
+                    (LocalDateTime) row[4]));
+        }
+        if (!holds.isEmpty()) {
+            logger.info("Re-queued {} ticket holds for expiry", holds.size());
+        }
+    }
+
+    /**
+     * Reserve tickets for a user. A user has at most one hold per ticket type: an
+     * existing hold of the same size is returned as is, a different one is replaced.
+     *
+     * @throws com.example.evenue.utils.InsufficientInventoryException if not enough tickets remain
+     * @throws IllegalArgumentException if the quantity is over the per-order limit, or would take
+     *         the user's held tickets for the event over the per-user limit
+     */
+    public TicketHoldModel hold(UserModel user, TicketTypeModel ticketType, int quantity) {
+        synchronized (userLocks[Math.floorMod(user.getId(), userLocks.length)]) {
+            return holdLocked(user, ticketType, quantity);
+        }
+    }
+
+    private TicketHoldModel holdLocked(UserModel user, TicketTypeModel ticketType, int quantity) {
+        Long ticketTypeId = ticketType.getTicketTypeId();
+        Long eventId = ticketType.getEvent().getId();
+
+        if (quantity <= 0 || quantity > maxPerOrder) {
+            throw new IllegalArgumentException("You can reserve between 1 and " + maxPerOrder + " tickets per order.");
+        }
+        // Other ticket types only; a hold on this one is replaced below
+        long heldElsewhere = ticketHoldDao.sumActiveHeldForEvent(user.getId(), eventId, ticketTypeId, LocalDateTime.now());
+        if (heldElsewhere + quantity > maxPerUserEvent) {
+            throw new IllegalArgumentException("You can reserve at most " + maxPerUserEvent +
+                    " tickets for this event at a time.");
+        }
+
+        // Keys rather than the entity: a replaced hold's ID may be reused by the new row
+        for (Object[] existing : ticketHoldDao.findHoldKeys(user.getId(), ticketTypeId)) {
+            Long holdId = (Long) existing[0];
+            Integer heldQuantity = (Integer) existing[1];
+            LocalDateTime heldUntil = (LocalDateTime) existing[2];
+            if (heldQuantity == quantity && heldUntil.isAfter(LocalDateTime.now())) {
+                TicketHoldModel current = ticketHoldDao.findById(holdId).orElse(null);
+                if (current != null) {
+                    return current;
+                }
+            }
+            // Expired ones too: the row would otherwise block the new hold until the sweeper gets to it
+            release(new PendingExpiry(holdId, ticketTypeId, eventId, heldQuantity, heldUntil));
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(holdMinutes);
+        TicketHoldModel hold = ticketInventoryService.take(ticketTypeId, eventId, quantity, () -> {
+            TicketHoldModel newHold = new TicketHoldModel();
+            newHold.setUser(user);
+            newHold.setTicketType(ticketType);
+            newHold.setQuantity(quantity);
+            newHold.setExpiresAt(expiresAt);
+            return ticketHoldDao.save(newHold);
+        });
+
+        expiries.add(new PendingExpiry(hold.getId(), ticketTypeId, eventId, quantity, expiresAt));
+        return hold;
+    }
+
+    /**
+     * Turn a user's hold into a ticket. The tickets were already taken when the hold
+     * was placed, so this never touches inventory.
+     *
+     * @throws HoldExpiredException if the hold has expired, been released or is not the user's
+     */
+    public TicketModel confirm(Long holdId, UserModel user) {
+        return transactionTemplate.execute(status -> {
+            TicketHoldModel hold = ticketHoldDao.findById(holdId).orElse(null);
+            if (hold == null || ticketHoldDao.claimHold(holdId, user.getId(), LocalDateTime.now()) == 0) {
+                throw new HoldExpiredException("Your reservation has expired. Please select your tickets again.");
+            }
+            // The queued expiry stays behind and is a no-op when it fires
+            TicketTypeModel ticketType = hold.getTicketType();
+            return ticketInventoryService.issueTicket(user, ticketType.getEvent(), ticketType, hold.getQuantity());
+        });
+    }
+
+    // Hand the tickets of due holds back to inventory, a batch per transaction
+    @Scheduled(fixedDelayString = "${evenue.holds.sweep-interval-ms:1000}")
+    public void releaseExpiredHolds() {
+        List<PendingExpiry> due = new ArrayList<>();
+        while (expiries.drainTo(due, sweepBatchSize) > 0) {
+            List<PendingExpiry> released;
+            try {
+                released = transactionTemplate.execute(status -> {
+                    List<PendingExpiry> removed = new ArrayList<>();
+                    for (PendingExpiry expiry : due) {
+                        if (releaseInTransaction(expiry)) {
+                            removed.add(expiry);
+                        }
+                    }
+                    return removed;
+                });
+            } catch (RuntimeException e) {
+                // Put the batch back and try again on the next sweep
+                logger.warn("Could not release {} expired ticket holds, will retry", due.size(), e);
+                expiries.addAll(due);
+                return;
+            }
+            for (PendingExpiry expiry : released) {
+                ticketInventoryService.returned(expiry.ticketTypeId, expiry.eventId, expiry.quantity);
+            }
+            if (!released.isEmpty()) {
+                logger.info("Released {} expired ticket holds", released.size());
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Apply the hold limits to an order bought without a hold, such as a cart checkout:
+     * at most the per-order limit, and with the user's held tickets for the event at
+     * most the per-user limit.
+     *
+     * @throws IllegalArgumentException if the order is over either limit
+     */
+    public void checkOrderLimits(UserModel user, Long eventId, int quantity) {
+        if (quantity <= 0 || quantity > maxPerOrder) {
+            throw new IllegalArgumentException("You can buy between 1 and " + maxPerOrder + " tickets per order.");
+        }
+        long held = ticketHoldDao.sumActiveHeldForUserEvent(user.getId(), eventId, LocalDateTime.now());
+        if (held + quantity > maxPerUserEvent) {
+            throw new IllegalArgumentException("You can have at most " + maxPerUserEvent +
+                    " tickets for this event reserved or in one order.");
+        }
+    }
+
+    public int getMaxPerOrder() {
+        return maxPerOrder;
+    }
+
+    // Number of holds waiting to expire
+    public int getPendingExpiries() {
+        return expiries.size();
+    }
+
+    private void release(PendingExpiry expiry) {
+        Boolean released = transactionTemplate.execute(status -> releaseInTransaction(expiry));
+        if (Boolean.TRUE.equals(released)) {
+            ticketInventoryService.returned(expiry.ticketTypeId, expiry.eventId, expiry.quantity);
+        }
+    }
+
+    // Delete the hold and return its tickets; false if it was already converted or released
+    private boolean releaseInTransaction(PendingExpiry expiry) {
+        if (ticketHoldDao.removeHold(expiry.holdId, expiry.expiresAt) == 0) {
+            return false;
+        }
+        ticketTypeDao.incrementRemaining(expiry.ticketTypeId, expiry.quantity);
+        return true;
+    }
+
+    private static final class PendingExpiry implements Delayed {
+        private final Long holdId;
+        private final Long ticketTypeId;
+        private final Long eventId;
+        private final int quantity;
+        private final LocalDateTime expiresAt;
+        private final long expiresAtMillis;
+
+        private PendingExpiry(Long holdId, Long ticketTypeId, Long eventId, int quantity, LocalDateTime expiresAt) {
+            this.holdId = holdId;
+            this.ticketTypeId = ticketTypeId;
+            this.eventId = eventId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+            this.expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtMillis, ((PendingExpiry) other).expiresAtMillis);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.tickets.TicketDao;
+import com.example.evenue.models.tickets.TicketModel;
+import com.example.evenue.models.tickets.TicketTypeDao;
+import com.example.evenue.models.tickets.TicketTypeModel;
+import com.example.evenue.models.users.UserModel;
+import com.example.evenue.utils.InsufficientInventoryException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ticket inventory. The database is the source of truth: a purchase takes its
+ * tickets with a conditional UPDATE (remaining_quantity >= quantity) in the same
+ * transaction as the ticket insert, so it can never oversell. In front of that an
+ * in-memory counter per ticket type turns away requests for sold-out types without
+ * touching the database, which matters most when a hot event sells out.
+ */
+@Service
+public class TicketInventoryService {
+
+    @Autowired
+    private TicketTypeDao ticketTypeDao;
+
+    @Autowired
+    private TicketDao ticketDao;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private TicketCodeService ticketCodeService;
+
+    @Autowired
+    private TicketSalesService ticketSalesService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final String DECREMENT_REMAINING_SQL = "UPDATE ticket_types SET remaining_quantity = remaining_quantity - ? " +
+            "WHERE ticket_type_id = ? AND remaining_quantity >= ?";
+
+    // One line of a cart: a ticket type and how many of it
+    public record CartLine(Long ticketTypeId, int quantity) {
+    }
+
+    // Ticket type ID -> tickets not yet taken by committed or in-flight purchases
+    private final ConcurrentMap<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    private final LongAdder fastRejections = new LongAdder();
+    private final LongAdder databaseRejections = new LongAdder();
+
+    /**
+     * Buy tickets of one type.
+     *
+     * @return the saved ticket
+     * @throws InsufficientInventoryException if fewer than {@code quantity} tickets remain
+     */
+    public TicketModel purchase(UserModel user, EventModel event, TicketTypeModel ticketType, int quantity) {
+        return take(ticketType.getTicketTypeId(), event.getId(), quantity,
+                () -> issueTicket(user, event, ticketType, quantity));
+    }
+
+    /**
+     * Take {@code quantity} tickets of a type and, in the same transaction, run
+     * {@code inTransaction} to record what they were taken for (a ticket, a hold).
+     * Called inside a transaction it joins it, and the counter follows that
+     * transaction's outcome.
+     *
+     * @throws InsufficientInventoryException if fewer than {@code quantity} tickets remain
+     */
+    <T> T take(Long ticketTypeId, Long eventId, int quantity, Supplier<T> inTransaction) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        // Fast path: reserve against the in-memory counter first
+        AtomicInteger counter = counter(ticketTypeId);
+        if (!tryTake(counter, quantity)) {
+            fastRejections.increment();
+            throw new InsufficientInventoryException("Not enough tickets available for this type.");
+        }
+
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        boolean taken = false;
+        try {
+            T result = transactionTemplate.execute(status -> {
+                if (ticketTypeDao.decrementRemaining(ticketTypeId, quantity) == 0) {
+                    throw new InsufficientInventoryException("Not enough tickets available for this type.");
+                }
+                return inTransaction.get();
+            });
+            taken = true;
+            if (joined) {
+                // The caller's transaction may still roll back after this returns
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_COMMITTED) {
+                            referenceDataCache.invalidateTicketTypes(eventId);
+                        } else {
+                            counter.addAndGet(quantity);
+                        }
+                    }
+                });
+            }
+            return result;
+        } catch (InsufficientInventoryException e) {
+            // The counter was ahead of the table (e.g. changed elsewhere); reload it next time
+            databaseRejections.increment();
+            available.remove(ticketTypeId, counter);
+            throw e;
+        } finally {
+            if (!taken) {
+                counter.addAndGet(quantity);
+            } else if (!joined) {
+                referenceDataCache.invalidateTicketTypes(eventId);
+            }
+        }
+    }
+
+    /**
+     * Buy several ticket types of one event at once: all lines succeed or none do.
+     * Lines are checked against the in-memory counters first, then one transaction
+     * takes every line's tickets with a single JDBC batch of conditional UPDATEs
+     * and saves all the tickets.
+     *
+     * @return the saved tickets, one per ticket type, in ticket type ID order
+     * @throws InsufficientInventoryException if any line asks for more tickets than remain
+     * @throws IllegalArgumentException if the cart is empty, a quantity is not positive
+     *                                  or a ticket type does not belong to the event
+     */
+    public List<TicketModel> purchaseCart(UserModel user, EventModel event, List<CartLine> lines) {
+        Map<Long, Integer> quantities = mergeLines(lines);
+
+        Map<Long, TicketTypeModel> ticketTypes = new HashMap<>();
+        for (TicketTypeModel ticketType : ticketTypeDao.findAllById(quantities.keySet())) {
+            ticketTypes.put(ticketType.getTicketTypeId(), ticketType);
+        }
+        for (Long ticketTypeId : quantities.keySet()) {
+            TicketTypeModel ticketType = ticketTypes.get(ticketTypeId);
+            if (ticketType == null || !event.getId().equals(ticketType.getEvent().getId())) {
+                throw new IllegalArgumentException("Ticket type " + ticketTypeId + " is not on sale for this event.");
+            }
+        }
+
+        // Fast path: reserve every line against the in-memory counters, or none of them
+        Map<Long, AtomicInteger> reserved = new HashMap<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            AtomicInteger counter = counter(line.getKey());
+            if (!tryTake(counter, line.getValue())) {
+                reserved.forEach((id, taken) -> taken.addAndGet(quantities.get(id)));
+                fastRejections.increment();
+                throw new InsufficientInventoryException("Not enough " + ticketTypes.get(line.getKey()).getTypeName() +
+                        " tickets available.");
+            }
+            reserved.put(line.getKey(), counter);
+        }
+
+        boolean committed = false;
+        try {
+            List<TicketModel> tickets = transactionTemplate.execute(status -> {
+                List<Object[]> decrements = new ArrayList<>(quantities.size());
+                quantities.forEach((id, quantity) -> decrements.add(new Object[]{quantity, id, quantity}));
+                int[] updated = jdbcTemplate.batchUpdate(DECREMENT_REMAINING_SQL, decrements);
+                int line = 0;
+                for (Long ticketTypeId : quantities.keySet()) {
+                    if (updated[line++] == 0) {
+                        available.remove(ticketTypeId, reserved.get(ticketTypeId));
+                        throw new InsufficientInventoryException("Not enough " + ticketTypes.get(ticketTypeId).getTypeName() +
+                                " tickets available.");
+                    }
+                }
+
+                List<TicketModel> unsaved = new ArrayList<>(quantities.size());
+                quantities.forEach((id, quantity) -> unsaved.add(newTicket(user, event, ticketTypes.get(id), quantity)));
+                List<TicketModel> saved = ticketDao.saveAll(unsaved);
+                for (TicketModel ticket : saved) {
+                    ticket.setTicketCode(ticketCodeService.sign(ticket));
+                    ticketSalesService.recordSale(ticket);
+                }
+                return saved;
+            });
+            committed = true;
+            return tickets;
+        } catch (InsufficientInventoryException e) {
+            databaseRejections.increment();
+            throw e;
+        } finally {
+            if (committed) {
+                referenceDataCache.invalidateTicketTypes(event.getId());
+            } else {
+                reserved.forEach((id, counter) -> counter.addAndGet(quantities.get(id)));
+            }
+        }
+    }
+
+    /**
+     * Quantity per ticket type of a cart, with repeated ticket types added together, in
+     * ticket type ID order; that order keeps concurrent carts locking rows in the same order.
+     *
+     * @throws IllegalArgumentException if the cart is empty or a line has no ticket type or quantity
+     */
+    public static Map<Long, Integer> mergeLines(List<CartLine> lines) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (CartLine line : lines) {
+            if (line.ticketTypeId() == null || line.quantity() <= 0) {
+                throw new IllegalArgumentException("Each cart line needs a ticket type and a positive quantity.");
+            }
+            quantities.merge(line.ticketTypeId(), line.quantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) {
+            throw new IllegalArgumentException("The cart is empty.");
+        }
+        return quantities;
+    }
+
+    // Record tickets given back to the pool by a committed release
+    void returned(Long ticketTypeId, Long eventId, int quantity) {
+        AtomicInteger counter = available.get(ticketTypeId);
+        if (counter != null) {
+            counter.addAndGet(quantity);
+        }
+        referenceDataCache.invalidateTicketTypes(eventId);
+    }
+
+    // Drop the cached counter after the ticket type is edited outside of purchases
+    public void evict(Long ticketTypeId) {
+        available.remove(ticketTypeId);
+    }
+
+    // Requests turned away by the in-memory counter alone
+    public long getFastRejections() {
+        return fastRejections.sum();
+    }
+
+    // Requests that passed the counter but were refused by the conditional UPDATE
+    public long getDatabaseRejections() {
+        return databaseRejections.sum();
+    }
+
+    private AtomicInteger counter(Long ticketTypeId) {
+        AtomicInteger counter = available.get(ticketTypeId);
+        if (counter != null) {
+            return counter;
+        }
+        Integer remaining = ticketTypeDao.findRemainingQuantity(ticketTypeId);
+        AtomicInteger loaded = new AtomicInteger(remaining != null ? remaining : 0);
+        AtomicInteger existing = available.putIfAbsent(ticketTypeId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static boolean tryTake(AtomicInteger counter, int quantity) {
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Save a ticket whose tickets were already taken. Must run in a transaction: the
+     * signed code embeds the generated ticket ID, so it replaces the provisional code
+     * once the row exists and is written when the transaction flushes. The sale is
+     * added to the event's sales totals in the same transaction.
+     */
+    TicketModel issueTicket(UserModel user, EventModel event, TicketTypeModel ticketType, int quantity) {
+        TicketModel ticket = ticketDao.save(newTicket(user, event, ticketType, quantity));
+        ticket.setTicketCode(ticketCodeService.sign(ticket));
+        ticketSalesService.recordSale(ticket);
+        return ticket;
+    }
+
+    private static TicketModel newTicket(UserModel user, EventModel event, TicketTypeModel ticketType, int quantity) {
+        TicketModel ticket = new TicketModel();
+        ticket.setUser(user);
+        ticket.setEvent(event);
+        ticket.setTicketType(ticketType);
+        ticket.setQuantity(quantity);
+        ticket.setPrice(ticketType.getPrice() * quantity);
+        ticket.generateTicketCode();
+        ticket.setPurchaseDate(LocalDateTime.now());
+        ticket.setCreatedAt(LocalDateTime.now());
+        ticket.setUpdatedAt(LocalDateTime.now());
+        return ticket;
+    }
+}
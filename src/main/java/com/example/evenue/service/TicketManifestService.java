@@ -0,0 +1,77 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.tickets.TicketDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Offline scanner manifest: a compact binary list of the valid tickets of one event,
+ * so door scanners can keep validating codes while they have no connection, then
+ * upload their scans in bulk (CheckInService#checkInBatch) once they are back online.
+ *
+ * Layout, big-endian: magic "EVTM", version (1 byte), event ID (8), generation time in
+ * epoch millis (8), entry count (4), then one 12-byte entry per ticket sorted by hash as
+ * an unsigned number: the first 8 bytes of the SHA-256 of the code, quantity (2), flags
+ * (1, bit 0 set if already scanned) and a reserved byte. Codes are hashed as stored;
+ * signed codes are upper case, so scanners upper-case base32 input before hashing.
+ * Only hashes are shipped, so a lost scanner does not leak usable ticket codes.
+ */
+@Service
+public class TicketManifestService {
+
+    public static final byte[] MAGIC = {'E', 'V', 'T', 'M'};
+    public static final byte VERSION = 1;
+    public static final int HEADER_BYTES = 25;
+    public static final int ENTRY_BYTES = 12;
+    public static final int FLAG_SCANNED = 1;
+
+    @Autowired
+    private TicketDao ticketDao;
+
+    @Autowired
+    private TicketCodeService ticketCodeService;
+
+    // Build the manifest of an event's valid tickets
+    public byte[] buildManifest(Long eventId) {
+        List<Object[]> rows = ticketDao.findManifestRows(eventId);
+        List<Entry> entries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            int quantity = row[1] != null ? Math.min((Integer) row[1], 0xFFFF) : 0;
+            entries.add(new Entry(hash((String) row[0]), quantity, Boolean.TRUE.equals(row[2])));
+        }
+        entries.sort(Comparator.comparing(Entry::hash, Long::compareUnsigned));
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + entries.size() * ENTRY_BYTES);
+        buffer.put(MAGIC).put(VERSION).putLong(eventId).putLong(System.currentTimeMillis()).putInt(entries.size());
+        for (Entry entry : entries) {
+            buffer.putLong(entry.hash())
+                    .putShort((short) entry.quantity())
+                    .put((byte) (entry.scanned() ? FLAG_SCANNED : 0))
+                    .put((byte) 0);
+        }
+        return buffer.array();
+    }
+
+    // Manifest hash of a code as a scanner would compute it
+    public long hash(String code) {
+        String normalized = ticketCodeService.isSignedFormat(code) ? code.toUpperCase(Locale.ROOT) : code;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Entry(long hash, int quantity, boolean scanned) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.tickets.EventSalesSummary;
+import com.example.evenue.models.tickets.TicketModel;
+import com.example.evenue.models.tickets.TicketSalesDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sales and check-in totals per event and ticket type (the ticket_sales table), so the
+ * organizer pages read a few rows per event instead of counting tickets. The totals are
+ * changed in the same transaction as the purchase or scan they count, so they never
+ * disagree with the tickets table; the record methods must run inside that transaction.
+ */
+@Service
+public class TicketSalesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketSalesService.class);
+
+    // Copies the stored purchase_date as is, so last_sale_at keeps Hibernate's encoding
+    private static final String BACKFILL_SQL = "INSERT INTO ticket_sales " +
+            "(event_id, ticket_type_id, tickets_sold, revenue, tickets_scanned, last_sale_at) " +
+            "SELECT tt.event_id, tt.ticket_type_id, COALESCE(SUM(t.quantity), 0), COALESCE(SUM(t.price), 0), " +
+            "COALESCE(SUM(CASE WHEN t.is_scanned = 1 THEN t.quantity ELSE 0 END), 0), MAX(t.purchase_date) " +
+            "FROM ticket_types tt LEFT JOIN tickets t ON t.ticket_type_id = tt.ticket_type_id " +
+            "GROUP BY tt.event_id, tt.ticket_type_id";
+
+    @Autowired
+    private TicketSalesDao ticketSalesDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Create the unique index the upserts need (Hibernate does not create unique constraints on SQLite),
+    // and build the totals from the tickets table the first time the application starts with it
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillSales() {
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_ticket_sales_event_type ON ticket_sales (event_id, ticket_type_id)");
+
+        if (ticketSalesDao.count() > 0) {
+            return;
+        }
+        int inserted = jdbcTemplate.update(BACKFILL_SQL);
+        logger.info("Backfilled sales totals for {} ticket types", inserted);
+    }
+
+    // Count a ticket just saved by a purchase
+    public void recordSale(TicketModel ticket) {
+        ticketSalesDao.addSale(ticket.getEvent().getId(), ticket.getTicketType().getTicketTypeId(),
+                ticket.getQuantity(), ticket.getPrice(), ticket.getPurchaseDate());
+    }
+
+    // Count a ticket just checked in
+    public void recordCheckIn(Long eventId, Long ticketTypeId, int quantity) {
+        ticketSalesDao.addCheckIn(eventId, ticketTypeId, quantity);
+    }
+
+    // Create the zero totals row of a new ticket type
+    public void createTotals(Long eventId, Long ticketTypeId) {
+        ticketSalesDao.createTotals(eventId, ticketTypeId);
+    }
+
+    // Event ID -> totals, for each of the organizer's events that has ticket types
+    public Map<Long, EventSalesSummary> getSalesByEvent(Integer organizerId) {
+        List<EventSalesSummary> summaries = ticketSalesDao.findEventSummariesByOrganizer(organizerId);
+        Map<Long, EventSalesSummary> salesByEvent = new HashMap<>(summaries.size() * 2);
+        for (EventSalesSummary summary : summaries) {
+            salesByEvent.put(summary.getEventId(), summary);
+        }
+        return salesByEvent;
+    }
+}
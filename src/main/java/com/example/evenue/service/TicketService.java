@@ -3,6 +3,8 @@ package com.example.evenue.service;
 import com.example.evenue.models.tickets.TicketDao;
 import com.example.evenue.models.tickets.TicketModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -33,6 +35,11 @@ public class TicketService {
         return ticketDao.findByUserId(userId);
     }
 
+    // One page of a user's tickets, newest first, ready to render without further queries
+    public Page<TicketModel> getTicketPageByUserId(int userId, Pageable pageable) {
+        return ticketDao.findPageByUserId(userId, pageable);
+    }
+
     // Method to delete a ticket by its ID
     public void deleteTicketById(Long ticketId) {
         ticketDao.deleteById(ticketId);
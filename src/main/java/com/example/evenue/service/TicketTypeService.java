@@ -1,9 +1,14 @@
 package com.example.evenue.service;
 
+import com.example.evenue.models.events.EventDao;
 import com.example.evenue.models.tickets.TicketTypeDao;
 import com.example.evenue.models.tickets.TicketTypeModel;
 import com.example.evenue.models.tickets.TicketTypeName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -15,9 +20,42 @@ public class TicketTypeService {
     @Autowired
     private TicketTypeDao ticketTypeDao;
 
+    @Autowired
+    private EventDao eventDao;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private TicketInventoryService ticketInventoryService;
+
+    @Autowired
+    private TicketSalesService ticketSalesService;
+
+    @Autowired
+    private EventService eventService;
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketTypeService.class);
+
+    // Fill events.min_price/max_price for events that predate the columns
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPriceRanges() {
+        int updated = eventDao.backfillPriceRanges();
+        logger.info("Backfilled price range for {} events", updated);
+    }
+
     // Method to save a new or updated ticket type
     public void saveTicketType(TicketTypeModel ticketType) {
         ticketTypeDao.save(ticketType); // This should save the ticketType along with its event association
+        ticketInventoryService.evict(ticketType.getTicketTypeId());
+
+        // Keep the event's denormalised price range and the cached ticket types in step
+        if (ticketType.getEvent() != null) {
+            eventDao.refreshPriceRange(ticketType.getEvent().getId());
+            eventService.invalidateCounts();
+            referenceDataCache.invalidateTicketTypes(ticketType.getEvent().getId());
+            ticketSalesService.createTotals(ticketType.getEvent().getId(), ticketType.getTicketTypeId());
+        }
     }
 
     // Method to retrieve a ticket type by its ID
@@ -25,16 +63,23 @@ public class TicketTypeService {
         return ticketTypeDao.findById(ticketTypeId).orElse(null);
     }
 
-    // Method to retrieve all ticket types for a specific event by event ID
+    // Method to retrieve all ticket types for a specific event by event ID (cached)
     public List<TicketTypeModel> getTicketTypesByEventId(Long eventId) {
-        return ticketTypeDao.findByEventId(eventId);
+        return referenceDataCache.getTicketTypes(eventId);
     }
 
 
 
     // Method to delete a ticket type by its ID
     public void deleteTicketTypeById(Long ticketTypeId) {
+        Optional<TicketTypeModel> ticketType = ticketTypeDao.findById(ticketTypeId);
         ticketTypeDao.deleteById(ticketTypeId);
+        ticketInventoryService.evict(ticketTypeId);
+        ticketType.ifPresent(deleted -> {
+            eventDao.refreshPriceRange(deleted.getEvent().getId());
+            eventService.invalidateCounts();
+            referenceDataCache.invalidateTicketTypes(deleted.getEvent().getId());
+        });
     }
 
     // Method to find ticket type by event ID and type name
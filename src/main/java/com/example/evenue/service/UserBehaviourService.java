@@ -1,96 +1,94 @@
 package com.example.evenue.service;
 
-import com.example.evenue.models.events.EventCategory;
-import com.example.evenue.models.events.EventCategoryDao;
-import com.example.evenue.models.userBehaviour.UserBehaviourDao;
-import com.example.evenue.models.userBehaviour.UserBehaviourModel;
-import com.example.evenue.models.users.UserModel;
+import com.example.evenue.models.userBehaviour.BehaviourBeacon;
+import com.example.evenue.models.userBehaviour.UserBehaviourEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.Iterator;
-import java.util.Optional;
+import java.util.List;
 import java.util.Set;
 
 @Service
 public class UserBehaviourService {
 
-    @Autowired
-    private UserBehaviourDao userBehaviourDao;
+    private static final int MAX_CLIENT_EVENT_ID_LENGTH = 64;
 
-    @Autowired
-    private UserService userService;
+    // Interactions a page may report. The rest (purchases, wishlist changes, ...) are logged by
+    // the server as they happen, so a beacon claiming one would only inflate counts and trending
+    private static final Set<String> BEACON_INTERACTION_TYPES = Set.of("view", "browse");
 
     @Autowired
-    private EventService eventService;
+    private BehaviourIngestionService behaviourIngestionService;
 
     @Autowired
-    private EventCategoryDao eventCategoryDao;
+    private ReferenceDataCache referenceDataCache;
+
+    // "userId:clientEventId" of beacons already recorded, so a retried beacon is not counted twice
+    private final ExpiringCache<String, Boolean> seenBeacons;
 
+    public UserBehaviourService(@Value("${evenue.behaviour.beacon-dedupe-ttl-minutes:30}") long dedupeTtlMinutes,
+                                @Value("${evenue.behaviour.beacon-dedupe-max-keys:100000}") int dedupeMaxKeys) {
+        this.seenBeacons = new ExpiringCache<>("behaviourBeacons", dedupeMaxKeys, dedupeTtlMinutes * 60_000);
+    }
+
+    // Record an interaction. Returns at once: the row is written in a later batch by
+    // BehaviourIngestionService, and may be dropped if its queue is full. Only IDs are
+    // recorded and the preferred categories come from the cache, so nothing is loaded
     public void logUserBehaviour(Integer userId, Long eventId, String interactionType, String eventLocation,
                                  String dateFilter, String priceFilter, String locationFilter, Double sessionLength,
                                  Integer friendId, Integer ticketId, Long eventCategoryId, String userLocation) {
+        List<Long> preferred = userId != null ? referenceDataCache.getPreferredCategoryIds(userId) : List.of();
+        behaviourIngestionService.submit(new UserBehaviourEvent(userId, eventId, interactionType, LocalDateTime.now(),
+                eventLocation, dateFilter, priceFilter, locationFilter, sessionLength, friendId, ticketId,
+                eventCategoryId, userLocation,
+                preferred.size() > 0 ? preferred.get(0) : null,
+                preferred.size() > 1 ? preferred.get(1) : null,
+                preferred.size() > 2 ? preferred.get(2) : null));
+    }
 
-        UserBehaviourModel behaviour = new UserBehaviourModel();
-        UserModel user = userService.findUserById(userId);
-
-        behaviour.setUser(user);
-
-        // Set the event if an eventId is provided
-        if (eventId != null) {
-            eventService.getEventById(eventId).ifPresent(behaviour::setEvent);
+    // Whether a page may report this interaction: a view of an event, or a browse of the listing
+    public boolean isAcceptedBeacon(BehaviourBeacon beacon) {
+        if (!BEACON_INTERACTION_TYPES.contains(beacon.interactionType())) {
+            return false;
         }
+        return !"view".equals(beacon.interactionType()) || beacon.eventId() != null;
+    }
 
-        // Set interaction type (e.g., "view" or "browse")
-        behaviour.setInteractionType(interactionType);
-
-        // Set the current timestamp for the interaction
-        behaviour.setInteractionTimestamp(LocalDateTime.now());
-
-        // Set event category if an eventCategoryId is provided
-        if (eventCategoryId != null) {
-            Optional<EventCategory> category = eventCategoryDao.findById(eventCategoryId);
-            behaviour.setEventCategory(category.orElse(null));  // Set EventCategory if found
+    /**
+     * Record an interaction sent by the browser. A beacon whose client event ID was already
+     * seen for the user (a retry after an unload the page could not confirm) is ignored.
+     * Beacons without a client event ID are recorded every time. A browse is not about one
+     * event, so any event sent with it is dropped.
+     *
+     * @return false if the beacon was a duplicate or is not {@link #isAcceptedBeacon accepted}
+     */
+    public boolean logBeacon(Integer userId, String userLocation, BehaviourBeacon beacon) {
+        if (!isAcceptedBeacon(beacon)) {
+            return false;
         }
-
-        // Set the event location
-        behaviour.setEventLocation(eventLocation);
-
-        // Set the new filters (dateFilter, priceFilter, locationFilter)
-        behaviour.setDateFilter(dateFilter);       // Set date filter
-        behaviour.setPriceFilter(priceFilter);     // Set price filter
-        behaviour.setLocationFilter(locationFilter);  // Set location filter
-
-        // Set the session length
-        behaviour.setSessionLength(sessionLength);
-
-        // Handle the friendId if it's provided
-        if (friendId != null) {
-            behaviour.setFriend(userService.findUserById(friendId));
+        String clientEventId = beacon.clientEventId();
+        if (clientEventId != null && !clientEventId.isBlank()) {
+            if (clientEventId.length() > MAX_CLIENT_EVENT_ID_LENGTH
+                    || !seenBeacons.putIfAbsent(userId + ":" + clientEventId, Boolean.TRUE)) {
+                return false;
+            }
         }
 
-        // Set ticket quantity action (if applicable)
-        behaviour.setTicketId(ticketId);
-
-        // Set user location
-        behaviour.setUserLocation(userLocation); // Save user location
-
-        // Set the user's preferred categories as individual columns
-        Set<EventCategory> preferredCategories = user.getPreferredCategories();
-        Iterator<EventCategory> iterator = preferredCategories.iterator();
-
-        if (iterator.hasNext()) {
-            behaviour.setPreferredCategory1(iterator.next().getId());
-        }
-        if (iterator.hasNext()) {
-            behaviour.setPreferredCategory2(iterator.next().getId());
-        }
-        if (iterator.hasNext()) {
-            behaviour.setPreferredCategory3(iterator.next().getId());
-        }
+        BehaviourBeacon.FilterType filter = beacon.filterType();
+        boolean aboutEvent = "view".equals(beacon.interactionType());
+        logUserBehaviour(userId, aboutEvent ? beacon.eventId() : null, beacon.interactionType(), beacon.eventLocation(),
+                filter != null ? filter.date() : null,
+                filter != null ? filter.price() : null,
+                filter != null ? filter.location() : null,
+                beacon.timeSpent(), beacon.friendId(), beacon.ticketQuantity(),
+                aboutEvent ? beacon.eventCategoryId() : null,
+                userLocation);
+        return true;
+    }
 
-        // Save to the database
-        userBehaviourDao.save(behaviour);
+    public ExpiringCache<String, Boolean> getBeaconCache() {
+        return seenBeacons;
     }
 }
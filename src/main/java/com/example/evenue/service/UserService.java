@@ -20,14 +20,20 @@ public class UserService {
     @Autowired
     private EventCategoryDao eventCategoryDao;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     @Autowired
     public UserService(UserDao userDao) {
         this.userDao = userDao;
     }
 
-    // Save a new user
+    // Save a new user (or an edited one, whose preferred categories may have changed)
     public void saveUser(UserModel user) {
         userDao.save(user);
+        if (user.getId() != null) {
+            referenceDataCache.invalidatePreferredCategories(user.getId());
+        }
     }
 
     // Find user by email
@@ -94,6 +100,7 @@ public class UserService {
 
         // Save the updated user
         userDao.save(user);
+        referenceDataCache.invalidatePreferredCategories(userId);
     }
 
     public void updatePreferredCategories(Integer userId, List<Long> selectedCategoryIds) {
@@ -111,5 +118,6 @@ public class UserService {
         // Update user's preferred categories
         user.setPreferredCategories(new HashSet<>(selectedCategories));
         userDao.save(user);
+        referenceDataCache.invalidatePreferredCategories(userId);
     }
 }
@@ -0,0 +1,86 @@
+package com.example.evenue.service;
+
+import com.example.evenue.service.AdmissionQueueBackend.State;
+import com.example.evenue.service.AdmissionQueueBackend.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Virtual waiting room for flash-sale events (opt-in per event). Buyers join a line
+ * and get a position token; a ticker admits them at a fixed rate, never letting more
+ * than max-active-per-event admitted buyers into the purchase flow of one event at a
+ * time. An admission lasts until the purchase completes or admission-minutes pass.
+ * The line itself lives in an {@link AdmissionQueueBackend}.
+ */
+@Service
+public class WaitingRoomService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitingRoomService.class);
+
+    private static final String SESSION_ATTRIBUTE_PREFIX = "waitingRoom.";
+
+    @Autowired
+    private AdmissionQueueBackend backend;
+
+    @Value("${evenue.queue.admit-per-second:2}")
+    private int admitPerSecond;
+
+    @Value("${evenue.queue.max-active-per-event:20}")
+    private int maxActivePerEvent;
+
+    @Value("${evenue.queue.admission-minutes:10}")
+    private long admissionMinutes;
+
+    @Value("${evenue.queue.abandon-seconds:60}")
+    private long abandonSeconds;
+
+    // Session attribute holding the buyer's token for an event's waiting room
+    public static String sessionAttribute(Long eventId) {
+        return SESSION_ATTRIBUTE_PREFIX + eventId;
+    }
+
+    // Issue a new token at the back of the line
+    public String join(Long eventId) {
+        String token = UUID.randomUUID().toString();
+        backend.join(eventId, token, System.currentTimeMillis());
+        return token;
+    }
+
+    // Where the token stands; polling this keeps the holder's place in line
+    public Status status(Long eventId, String token) {
+        if (token == null) {
+            return new Status(State.UNKNOWN, 0);
+        }
+        return backend.status(eventId, token, System.currentTimeMillis());
+    }
+
+    public boolean isAdmitted(Long eventId, String token) {
+        return status(eventId, token).state() == State.ADMITTED;
+    }
+
+    // Free the token's purchase slot once it is no longer needed
+    public void release(Long eventId, String token) {
+        if (token != null) {
+            backend.release(eventId, token);
+        }
+    }
+
+    // Let the next buyers in, one tick per second so admit-per-second is the rate
+    @Scheduled(fixedRate = 1000)
+    public void admitWaiting() {
+        long now = System.currentTimeMillis();
+        for (Long eventId : backend.activeEvents()) {
+            int admitted = backend.admit(eventId, admitPerSecond, maxActivePerEvent,
+                    admissionMinutes * 60_000, abandonSeconds * 1000, now);
+            if (admitted > 0) {
+                logger.debug("Admitted {} buyers from the waiting room of event {}", admitted, eventId);
+            }
+        }
+    }
+}
@@ -7,8 +7,13 @@ import com.example.evenue.models.wishlist.WishlistModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,6 +22,12 @@ public class WishlistService {
     @Autowired
     private WishlistDao wishlistDao;
 
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    // User ID -> IDs of the events in their wishlist. Entries are dropped on every
+    // wishlist change; computeIfAbsent keeps a concurrent reload from resurrecting stale data.
+    private final Map<Integer, Set<Long>> likedEventCache = new ConcurrentHashMap<>();
+
     // Get all wishlist events for a user
     public List<WishlistModel> getWishlistByUser(UserModel user) {
         return wishlistDao.findByUser(user);
@@ -28,7 +39,9 @@ public class WishlistService {
         Optional<WishlistModel> wishlistItem = wishlistDao.findByUserAndEvent(user, event);
         if (wishlistItem.isEmpty()) {
             WishlistModel newWishlistItem = new WishlistModel(user, event);
-            return wishlistDao.save(newWishlistItem);
+            WishlistModel saved = wishlistDao.save(newWishlistItem);
+            likedEventCache.remove(user.getId());
+            return saved;
         } else {
             return wishlistItem.get(); // Already exists
         }
@@ -39,6 +52,7 @@ public class WishlistService {
         Optional<WishlistModel> wishlistItem = wishlistDao.findById(wishlistId);
         if (wishlistItem.isPresent()) {
             wishlistDao.delete(wishlistItem.get());
+            likedEventCache.remove(wishlistItem.get().getUser().getId());
             return true;
         }
         return false;
@@ -46,7 +60,34 @@ public class WishlistService {
 
     // Check if an event is liked by the user
     public boolean isEventLikedByUser(UserModel user, EventModel event) {
-        return wishlistDao.findByUserAndEvent(user, event).isPresent();
+        return likedEventIds(user).contains(event.getId());
+    }
+
+    /**
+     * Resolve which of the given events the user has liked, for a whole page at once.
+     * The user's liked set is loaded with one query on first use and then served from
+     * memory until their wishlist changes.
+     *
+     * @param user     the user browsing
+     * @param eventIds the events on the page
+     * @return the subset of eventIds that are in the user's wishlist
+     */
+    public Set<Long> likedEventIds(UserModel user, Collection<Long> eventIds) {
+        Set<Long> liked = likedEventIds(user);
+        return eventIds.stream()
+                .filter(liked::contains)
+                .collect(Collectors.toSet());
+    }
+
+    private Set<Long> likedEventIds(UserModel user) {
+        if (user == null || user.getId() == null) {
+            return Collections.emptySet();
+        }
+        if (likedEventCache.size() >= MAX_CACHED_USERS) {
+            likedEventCache.clear();
+        }
+        return likedEventCache.computeIfAbsent(user.getId(),
+                userId -> Set.copyOf(wishlistDao.findEventIdsByUserId(userId)));
     }
 
     // Toggle like (add or remove) for an event
@@ -58,5 +99,6 @@ public class WishlistService {
             WishlistModel newWishlistItem = new WishlistModel(user, event);
             wishlistDao.save(newWishlistItem); // Add to wishlist
         }
+        likedEventCache.remove(user.getId());
     }
 }
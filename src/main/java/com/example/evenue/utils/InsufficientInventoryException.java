@@ -0,0 +1,7 @@
+package com.example.evenue.utils;
+
+public class InsufficientInventoryException extends RuntimeException {
+    public InsufficientInventoryException(String message) {
+        super(message);
+    }
+}
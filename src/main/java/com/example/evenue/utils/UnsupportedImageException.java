@@ -0,0 +1,7 @@
+package com.example.evenue.utils;
+
+public class UnsupportedImageException extends RuntimeException {
+    public UnsupportedImageException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.evenue.service;
+
+import com.example.evenue.models.events.EventCategory;
+import com.example.evenue.models.events.EventCategoryDao;
+import com.example.evenue.models.events.EventModel;
+import com.example.evenue.models.tickets.TicketDao;
+import com.example.evenue.models.tickets.TicketModel;
+import com.example.evenue.models.tickets.TicketTypeDao;
+import com.example.evenue.models.tickets.TicketTypeModel;
+import com.example.evenue.models.tickets.TicketTypeName;
+import com.example.evenue.models.users.UserDao;
+import com.example.evenue.models.users.UserModel;
+import com.example.evenue.utils.InsufficientInventoryException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class TicketInventoryServiceTest {
+
+    private static final int INITIAL_TICKETS = 500;
+    private static final int PURCHASES = 3000;
+    private static final int THREADS = 64;
+
+    // A throwaway SQLite file, so the test never writes to the configured database (nor the behaviour log)
+    private static Path database;
+
+    @DynamicPropertySource
+    static void temporaryDatabase(DynamicPropertyRegistry registry) throws IOException {
+        database = Files.createTempFile("evenue-inventory-test-", ".db");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + database.toAbsolutePath());
+        registry.add("evenue.behaviour.log.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void deleteDatabase() throws IOException {
+        Files.deleteIfExists(database);
+    }
+
+    @Autowired
+    private TicketInventoryService ticketInventoryService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventCategoryDao eventCategoryDao;
+
+    @Autowired
+    private TicketTypeDao ticketTypeDao;
+
+    @Autowired
+    private TicketDao ticketDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long eventId;
+    private Long categoryId;
+    private Integer userId;
+
+    // The context, and so the file, can be shared with other tests; leave no rows behind
+    @AfterEach
+    void deleteRows() {
+        if (eventId != null) {
+            jdbcTemplate.update("DELETE FROM tickets WHERE event_id = ?", eventId);
+            jdbcTemplate.update("DELETE FROM ticket_sales WHERE event_id = ?", eventId);
+            jdbcTemplate.update("DELETE FROM ticket_types WHERE event_id = ?", eventId);
+            jdbcTemplate.update("DELETE FROM events WHERE event_id = ?", eventId);
+        }
+        if (categoryId != null) {
+            jdbcTemplate.update("DELETE FROM event_categories WHERE id = ?", categoryId);
+        }
+        if (userId != null) {
+            jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+        }
+    }
+
+    @Test
+    void parallelPurchasesNeverOversell() throws Exception {
+        EventCategory category = eventCategoryDao.save(new EventCategory("Inventory " + System.nanoTime()));
+        EventModel event = eventService.addEvent(new EventModel(1, "Organizer", "Sell-out show", "", "London",
+                LocalDate.now().plusDays(30), LocalTime.of(19, 0), LocalTime.of(23, 0), 20.0, null, "Arena", category));
+        categoryId = category.getId();
+        eventId = event.getId();
+
+        UserModel buyer = new UserModel();
+        buyer.setUserName("buyer");
+        buyer.setEmail("buyer-" + System.nanoTime() + "@example.com");
+        buyer.setPassword("secret");
+        UserModel user = userDao.save(buyer);
+        userId = user.getId();
+
+        TicketTypeModel ticketType = new TicketTypeModel();
+        ticketType.setEvent(event);
+        ticketType.setTypeName(TicketTypeName.VIP);
+        ticketType.setPrice(20.0);
+        ticketType.setQuantity(INITIAL_TICKETS);
+        ticketType.setRemainingQuantity(INITIAL_TICKETS);
+        TicketTypeModel saved = ticketTypeDao.save(ticketType);
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Throwable> unexpected = new CopyOnWriteArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < PURCHASES; i++) {
+            int quantity = 1 + i % 3;
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    TicketModel ticket = ticketInventoryService.purchase(user, event, saved, quantity);
+                    sold.addAndGet(ticket.getQuantity());
+                } catch (InsufficientInventoryException e) {
+                    rejected.incrementAndGet();
+                } catch (Throwable t) {
+                    unexpected.add(t);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected purchase failures: " + unexpected);
+
+        int remaining = ticketTypeDao.findRemainingQuantity(saved.getTicketTypeId());
+        int ticketsInDatabase = ticketDao.findByEventId(event.getId()).stream().mapToInt(TicketModel::getQuantity).sum();
+
+        assertTrue(remaining >= 0, "Remaining quantity went negative: " + remaining);
+        assertEquals(INITIAL_TICKETS, sold.get() + remaining, "Sold plus remaining must equal the initial stock");
+        assertEquals(sold.get(), ticketsInDatabase, "Every sold ticket must have a ticket row, and only those");
+        assertTrue(remaining < 3, "Demand exceeds stock, so the type should be (nearly) sold out");
+        assertTrue(ticketInventoryService.getFastRejections() > 0, "Sold-out requests should be refused in memory");
+
+        // The in-memory counter must agree with the table: exactly the remaining tickets can still be bought
+        if (remaining > 0) {
+            ticketInventoryService.purchase(user, event, saved, remaining);
+        }
+        assertThrows(InsufficientInventoryException.class, () -> ticketInventoryService.purchase(user, event, saved, 1),
+                "Nothing should be left once the remaining tickets are bought");
+        assertEquals(0, ticketTypeDao.findRemainingQuantity(saved.getTicketTypeId()));
+    }
+}